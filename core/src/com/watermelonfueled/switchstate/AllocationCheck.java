@@ -0,0 +1,133 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.MathUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Checks that the simulation does not allocate once warmed up, so a frame never waits on the garbage collector. Plays
+ * synthetic levels from {@link LevelGenerator} the way {@link GameScreen} does, input through the
+ * {@link InputSampler} into the {@link TickLoop} with the session recorded and the level streamed around the player,
+ * and measures the bytes allocated by the thread after warming up. Runs from a plain main on the desktop JVM, no GL
+ * context needed. Build tool only, excluded from the GWT build as it uses the HotSpot specific
+ * {@link com.sun.management.ThreadMXBean}.
+ * <p>
+ * The project has no test source set, so this stands in for a regression test: run it as a build or CI step with
+ * {@code java -Xint -cp <desktop classpath> com.watermelonfueled.switchstate.AllocationCheck}. It exits with status 1
+ * if anything was allocated after warming up, and 2 if the JVM can not count allocations per thread, so the step
+ * fails rather than passing unchecked.
+ * <p>
+ * The player walks a square over and over, so the measured frames cover ground the warm up already did and buffers
+ * sized by the most enemies or walls loaded at once have grown to fit.
+ * <p>
+ * Run it interpreted, with -Xint. The JIT compilers remove some allocations the code does, and their tier changes
+ * allocate a few hundred bytes now and then that are counted against the thread, so only the interpreter counts
+ * exactly the allocations in the code.
+ */
+public class AllocationCheck {
+    private static final int WARMUP_FRAMES = 60 * 60;           // frames played before measuring
+    private static final int MEASURED_FRAMES = 5 * 60 * 60;     // frames measured
+    private static final float FRAME_TIME = 1f / 60f;           // time (s) of each frame
+    private static final float LEG_TIME = 2f;                   // time (s) the player walks each side of the square
+    private static final int ENEMIES = 20000, WALLS = 2000, PATTERNS = 16;
+    private static final long SEED = 1L;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final EnemyFactory enemyFactory;
+
+    /**
+     * Runs the check on a whole level and a streamed one, with overlap checks and with kinetic collisions.
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        if (!System.getProperty("java.vm.info", "").contains("interpreted")) {
+            System.out.println("Not run with -Xint, compiled code may hide or add allocations.");
+        }
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            System.out.println("This JVM can not count allocations per thread.");
+            System.exit(2);
+        }
+        ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+        AllocationCheck check = new AllocationCheck();
+        LevelData data = LevelGenerator.generate(SEED, ENEMIES, WALLS, PATTERNS);
+        byte[] compiled = LevelCompiler.compile(data);
+        long allocated = 0;
+        for (int kinetic = 0; kinetic < 2; kinetic++) {
+            Level whole = new Level(check.enemyFactory);
+            whole.build(data);
+            allocated += check.run("whole", whole, kinetic == 1);
+            Level streamed = new Level(check.enemyFactory);
+            streamed.build(ByteBuffer.wrap(compiled));
+            allocated += check.run("streamed", streamed, kinetic == 1);
+        }
+        if (allocated > 0) {
+            System.out.println("FAILED, " + allocated + " bytes allocated after warming up");
+            System.exit(1);
+        }
+        System.out.println("passed, nothing allocated after warming up");
+    }
+
+    /**
+     * Constructor for the check. Enemies all use a single prototype, so no asset files are read.
+     */
+    public AllocationCheck() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        EnemyPrototype prototype = new EnemyPrototype();
+        prototype.width = prototype.height = 2f;
+        ArrayList<EnemyPrototype> prototypes = new ArrayList<EnemyPrototype>();
+        prototypes.add(prototype);
+        enemyFactory = new EnemyFactory(prototypes);
+    }
+
+    /**
+     * Plays a level, warming up and then measuring, and prints the bytes allocated while measuring.
+     * @param name name of the level for the report
+     * @param level the level, already built
+     * @param kinetic true to use kinetic collisions, see {@link World#setKineticCollisions(boolean)}
+     * @return bytes allocated while measuring
+     */
+    public long run(String name, Level level, boolean kinetic) {
+        World world = new World(new Player());
+        world.setKineticCollisions(kinetic);
+        world.setLevel(level);
+        InputSampler input = new InputSampler();
+        TickLoop loop = new TickLoop(world, input);
+        InputRecording recording = new InputRecording();
+        recording.start(0, loop.getTickLength());
+        input.setRecording(recording);
+
+        long thread = Thread.currentThread().getId();
+        int frame = 0;
+        for (; frame < WARMUP_FRAMES; frame++) { playFrame(frame, world, input, loop, recording); }
+        long start = threads.getThreadAllocatedBytes(thread);
+        for (; frame < WARMUP_FRAMES + MEASURED_FRAMES; frame++) { playFrame(frame, world, input, loop, recording); }
+        long allocated = threads.getThreadAllocatedBytes(thread) - start;
+        System.out.println(name + (kinetic ? " kinetic" : "") + ": " + allocated + " bytes allocated in "
+                + MEASURED_FRAMES + " frames");
+        return allocated;
+    }
+
+    /**
+     * Plays a frame: touch input turning the player at each corner of the square, the frame's ticks, streaming around
+     * the player and recording the frame.
+     */
+    private void playFrame(int frame, World world, InputSampler input, TickLoop loop, InputRecording recording) {
+        float time = frame * FRAME_TIME;
+        int framesPerLeg = MathUtils.round(LEG_TIME / FRAME_TIME);
+        if (frame % framesPerLeg == 0) {
+            float angle = (frame / framesPerLeg % 4) * MathUtils.PI / 2;
+            input.touchUp(time);
+            input.touchDown(0, 0, time);
+            input.touchDragged(-MathUtils.cos(angle) * InputSampler.MAX_DISTANCE,
+                    MathUtils.sin(angle) * InputSampler.MAX_DISTANCE, time);
+        }
+        loop.advance(FRAME_TIME);
+        Player player = world.player;
+        world.stream(player.getX(), player.getY());
+        recording.frame(FRAME_TIME, player.getX(), player.getY());
+    }
+}
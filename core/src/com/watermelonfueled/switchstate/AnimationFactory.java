@@ -2,7 +2,6 @@ package com.watermelonfueled.switchstate;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.utils.Json;
 
@@ -29,32 +28,21 @@ public class AnimationFactory {
     }
 
     /**
-     * Creates the animation from the texture using the data found in the prototype
+     * Creates the animation from the texture using the data found in the prototype. Each texture region is created
+     * once and shown for its number of frames, see {@link FrameAnimation}.
      * @param id the id of the animation prototype
      * @param texture main texture to get texture regions from
-     * @return the created Animation
+     * @return the created animation
      */
-    public Animation getAnimation(int id, Texture texture){
+    public FrameAnimation getAnimation(int id, Texture texture){
         AnimationPrototype prototype = prototypes.get(id);
-        TextureRegion[] frames = new TextureRegion[prototype.animFrameCount];
-        for (int i = 0, f = 0; i < prototype.textNumFrames.length; i++) {
-            TextureRegion frame = new TextureRegion(texture, prototype.textX[i],prototype.textY[i],
+        TextureRegion[] regions = new TextureRegion[prototype.textNumFrames.length];
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = new TextureRegion(texture, prototype.textX[i],prototype.textY[i],
                     prototype.textWidth, prototype.textHeight);
-            for (int j = 0; j < prototype.textNumFrames[i]; j++, f++) {
-                frames[f] = frame;
-            }
         }
-        Animation animation = new Animation(prototype.animLength, frames);
-        switch (prototype.loopType){
-            case 1:
-                animation.setPlayMode(Animation.PlayMode.LOOP);
-                break;
-            case 2:
-                animation.setPlayMode(Animation.PlayMode.LOOP_PINGPONG);
-                break;
-            case 3:
-                animation.setPlayMode(Animation.PlayMode.NORMAL);
-        }
-        return animation;
+        int playMode = prototype.loopType == FrameAnimation.LOOP || prototype.loopType == FrameAnimation.LOOP_PINGPONG
+                ? prototype.loopType : FrameAnimation.NORMAL;
+        return new FrameAnimation(prototype.animLength, regions, prototype.textNumFrames, playMode);
     }
 }
@@ -2,20 +2,41 @@ package com.watermelonfueled.switchstate;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
 
 /**
  * Handles all the assets (textures, sounds, images) for the game and allows easy access for other classes.
+ * <p>
+ * Textures are loaded on demand and reference counted, see {@link #acquireTexture(String)}. Level backgrounds live on
+ * texture pages that stay loaded after their last release so replaying a level is instant, until the resident
+ * texture memory goes over the budget and the least recently used idle pages are unloaded.
  */
 public class AssetManager {
     private static final String TAG = "ASSET MANAGER";      //tag for log
+    private static final String MAIN_TEXTURE = "texture.png";
+    private static final String WALL_TEXTURE = "wall.png";  // the wall sprite, stretched over each wall
     public static Texture texture;                          //texture file
     public static BitmapFont font;                          //font used throughout game
 
-    public static TextureRegion[] levelBGs;
+    // Level backgrounds. Page 0 is the main texture, the rest are levelbgN.png
     private static final int LEVEL_BG_WIDTH = 256;
+    private static final int FIRST_PAGE_BGS = 1;            // backgrounds on the main texture, in a row at y 128
+    private static final int BG_PAGE_COLUMNS = 2, BGS_PER_PAGE = 4;     // 512x512 background pages
+    public static final long DEFAULT_TEXTURE_BUDGET = 32L * 1024 * 1024;    // bytes
+    private static final IntMap<TextureRegion> levelBGs = new IntMap<TextureRegion>();  // by level, loaded pages only
+    private static final Array<String> backgroundPages = new Array<String>();   // loaded pages, least recent first
+    private static final ObjectIntMap<String> pageIndices = new ObjectIntMap<String>();    // page of each loaded path
+    public static TextureRegion wall;                       // null if the game has no wall sprite
+
+    // Loaded textures
+    private static final ObjectMap<String, Texture> textures = new ObjectMap<String, Texture>();
+    private static final ObjectIntMap<String> references = new ObjectIntMap<String>();
+    private static long residentBytes, textureBudget = DEFAULT_TEXTURE_BUDGET;
 
     private static AnimationFactory animationFactory;
 
@@ -24,28 +45,27 @@ public class AssetManager {
     public static TextureRegion[] levelButtonBackgrounds;
 
     // Player related
-    public static Animation playerFrozenAnimation;
-    public static Animation playerMovingAnimation;
+    public static FrameAnimation playerFrozenAnimation;
+    public static FrameAnimation playerMovingAnimation;
 
     // Enemy related
     private static final int ENEMY_COUNT = 1;
-    public static Animation[] enemyAnimations = new Animation[ENEMY_COUNT];
+    private static FrameAnimation[] enemyAnimations = new FrameAnimation[ENEMY_COUNT];   // created on first use
     //public static Animation[] enemySleepAnimations = new Animation[ENEMY_COUNT];
 
     /**
-     * Loads all the assets
+     * Loads the assets needed from the start. Everything else is loaded on demand.
      */
     public static void load() {
         Gdx.app.log(TAG,"Loading assets...");
-        texture = new Texture("texture.png");
+        texture = acquireTexture(MAIN_TEXTURE);     // held until dispose
         font = new BitmapFont();
 
         animationFactory = AnimationFactory.instantiate();
 
         loadUI();
         loadPlayer();
-        loadEnemies();
-        loadLevelBGs(1);
+        loadWall();
         //loadAudio();
         Gdx.app.log(TAG,"Finished loading assets.");
     }
@@ -72,29 +92,190 @@ public class AssetManager {
     }
 
     /**
-     * Loads assets for {@link Enemy}; Moving animation; Sleep animation
+     * Loads the wall sprite from its own texture, so it does not depend on a spot in the main texture's layout.
+     * Walls are not drawn if the texture is missing.
+     */
+    private static void loadWall() {
+        if (!Gdx.files.internal(WALL_TEXTURE).exists()) {
+            Gdx.app.error(TAG, "No "+WALL_TEXTURE+", walls will not be drawn");
+            return;
+        }
+        wall = new TextureRegion(acquireTexture(WALL_TEXTURE));     // held until dispose
+    }
+
+    /**
+     * Gets the moving animation of an enemy type, see {@link EnemyStore#animationId}, creating it on first use.
+     * @param id the enemy's animation id
+     * @return the animation
+     */
+    public static FrameAnimation getEnemyAnimation(int id) {
+        FrameAnimation animation = enemyAnimations[id];
+        if (animation == null) {
+            Gdx.app.debug(TAG, "Loading animation for enemy "+id);
+            animation = animationFactory.getAnimation(id+2,texture);
+            enemyAnimations[id] = animation;
+        }
+        return animation;
+    }
+
+    /**
+     * Gets a texture, loading it if it is not loaded, and adds a reference to it. Each acquire must be matched by a
+     * {@link #releaseTexture(String)}.
+     * @param path internal path of the texture
+     * @return the texture
      */
-    private static void loadEnemies() {
-        Gdx.app.log(TAG,"Loading enemies assets...");
-        // for each enemy type
-        for (int i = 0; i < ENEMY_COUNT; i++) {
-            enemyAnimations[i] = animationFactory.getAnimation(i+2,texture);
+    public static Texture acquireTexture(String path) {
+        Texture loaded = textures.get(path);
+        if (loaded == null) {
+            Gdx.app.debug(TAG, "Loading texture "+path);
+            loaded = new Texture(path);
+            textures.put(path, loaded);
+            residentBytes += textureBytes(loaded);
+            Gdx.app.debug(TAG, "Resident texture memory "+(residentBytes / 1024)+" KB");
         }
-        Gdx.app.log(TAG,"Enemies loaded.");
+        references.getAndIncrement(path, 0, 1);
+        evictBackgrounds();
+        return loaded;
+    }
+
+    /**
+     * Removes a reference to a texture. Unloads the texture when it was the last one, except for level background
+     * pages, which stay loaded until they are evicted for the texture budget.
+     * @param path internal path of the texture
+     */
+    public static void releaseTexture(String path) {
+        int count = references.getAndIncrement(path, 0, -1) - 1;
+        if (count > 0) { return; }
+        references.remove(path, 0);
+        if (count < 0) {
+            Gdx.app.error(TAG, "Released texture that was not acquired: "+path);
+        } else if (pageIndices.containsKey(path)) {
+            evictBackgrounds();
+        } else {
+            unloadTexture(path);
+        }
+    }
+
+    /**
+     * Gets the background of a level, loading its texture page if needed, and adds a reference to the page. Must be
+     * matched by a {@link #releaseLevelBG(int)}.
+     * @param level the level, starting from 1
+     * @return the level's background
+     */
+    public static TextureRegion acquireLevelBG(int level) {
+        int page = backgroundPage(level);
+        String path = backgroundPagePath(page);
+        Texture pageTexture = acquireTexture(path);
+        // most recently used page goes last
+        backgroundPages.removeValue(path, false);
+        backgroundPages.add(path);
+        pageIndices.put(path, page);
+        TextureRegion bg = levelBGs.get(level);
+        if (bg == null) {
+            Gdx.app.debug(TAG, "Loading background for level "+level);
+            if (page == 0) {
+                bg = new TextureRegion(pageTexture, (level - 1) * LEVEL_BG_WIDTH, 128, LEVEL_BG_WIDTH, LEVEL_BG_WIDTH);
+            } else {
+                int index = (level - 1 - FIRST_PAGE_BGS) % BGS_PER_PAGE;
+                bg = new TextureRegion(pageTexture, index % BG_PAGE_COLUMNS * LEVEL_BG_WIDTH,
+                        index / BG_PAGE_COLUMNS * LEVEL_BG_WIDTH, LEVEL_BG_WIDTH, LEVEL_BG_WIDTH);
+            }
+            levelBGs.put(level, bg);
+        }
+        return bg;
+    }
+
+    /**
+     * Removes a reference to a level's background page.
+     * @param level the level, starting from 1
+     */
+    public static void releaseLevelBG(int level) {
+        releaseTexture(backgroundPagePath(backgroundPage(level)));
+    }
+
+    /**
+     * Sets the texture memory budget. Idle level background pages are unloaded, least recently used first, while the
+     * resident texture memory is over it. Textures still referenced are never unloaded.
+     * @param bytes the budget
+     */
+    public static void setTextureBudget(long bytes) {
+        textureBudget = bytes;
+        evictBackgrounds();
     }
 
     /**
-     * Loads the backgrounds for each {@link Level}.
-     * @param levelCount the number of levels in the game
+     * Gets the memory used by the loaded textures, estimated at 4 bytes per pixel.
+     * @return resident texture bytes
      */
-    private static void loadLevelBGs(int levelCount) {
-        Gdx.app.log(TAG, "Loading level backgrounds...");
-        levelBGs = new TextureRegion[levelCount];
-        for (int i = 0; i < levelCount; i++) {
-            Gdx.app.debug(TAG, "Loading background for level "+(i+1));
-            levelBGs[i] = new TextureRegion(texture,i * LEVEL_BG_WIDTH, 128, LEVEL_BG_WIDTH,LEVEL_BG_WIDTH);
+    public static long getResidentTextureBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Unloads idle background pages, least recently used first, until the resident texture memory is within budget.
+     */
+    private static void evictBackgrounds() {
+        for (int i = 0; i < backgroundPages.size && residentBytes > textureBudget; ) {
+            String path = backgroundPages.get(i);
+            if (references.get(path, 0) > 0) {
+                i++;
+                continue;
+            }
+            backgroundPages.removeIndex(i);
+            int page = pageIndices.remove(path, 0);
+            for (int level = firstLevelOnPage(page), end = firstLevelOnPage(page + 1); level < end; level++) {
+                levelBGs.remove(level);
+            }
+            unloadTexture(path);
         }
-        Gdx.app.log(TAG, "Level backgrounds loaded");
+    }
+
+    /**
+     * Disposes a texture that is no longer referenced.
+     * @param path internal path of the texture
+     */
+    private static void unloadTexture(String path) {
+        Texture loaded = textures.remove(path);
+        if (loaded == null) { return; }
+        residentBytes -= textureBytes(loaded);
+        loaded.dispose();
+        Gdx.app.debug(TAG, "Unloaded texture "+path+", resident texture memory "+(residentBytes / 1024)+" KB");
+    }
+
+    /**
+     * Estimates the memory a texture uses.
+     * @param texture the texture
+     * @return size in bytes
+     */
+    private static long textureBytes(Texture texture) {
+        return 4L * texture.getWidth() * texture.getHeight();
+    }
+
+    /**
+     * Gets the texture page a level's background is on.
+     * @param level the level, starting from 1
+     * @return the page, 0 for the main texture
+     */
+    private static int backgroundPage(int level) {
+        return level <= FIRST_PAGE_BGS ? 0 : 1 + (level - 1 - FIRST_PAGE_BGS) / BGS_PER_PAGE;
+    }
+
+    /**
+     * Gets the first level whose background is on a page.
+     * @param page the page
+     * @return the level, starting from 1
+     */
+    private static int firstLevelOnPage(int page) {
+        return page == 0 ? 1 : 1 + FIRST_PAGE_BGS + (page - 1) * BGS_PER_PAGE;
+    }
+
+    /**
+     * Gets the file of a background page.
+     * @param page the page
+     * @return internal path of the page's texture
+     */
+    private static String backgroundPagePath(int page) {
+        return page == 0 ? MAIN_TEXTURE : "levelbg" + page + ".png";
     }
 
     // TODO audio loading
@@ -103,6 +284,14 @@ public class AssetManager {
      * Releases all resources loaded by this.
      */
     public static void dispose(){
-        texture.dispose();
+        for (Texture loaded : textures.values()) {
+            loaded.dispose();
+        }
+        textures.clear();
+        references.clear();
+        backgroundPages.clear();
+        pageIndices.clear();
+        levelBGs.clear();
+        residentBytes = 0;
     }
 }
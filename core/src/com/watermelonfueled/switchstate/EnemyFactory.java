@@ -1,6 +1,7 @@
 package com.watermelonfueled.switchstate;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Json;
 
 import java.util.ArrayList;
@@ -14,28 +15,59 @@ public class EnemyFactory {
 
     private EnemyFactory() {}
 
+    /**
+     * Constructor for a factory with already loaded prototypes.
+     * @param prototypes the enemy prototypes, indexed by id
+     */
+    public EnemyFactory(ArrayList<EnemyPrototype> prototypes) {
+        this.prototypes = prototypes;
+    }
+
     /**
      * Creates the factory, loading the {@link EnemyPrototype} data from file
      * @return the factory itself
      */
     public static EnemyFactory instantiate() {
+        return instantiate(Gdx.files.internal("enemyPrototypes.json"));
+    }
+
+    /**
+     * Creates the factory, loading the {@link EnemyPrototype} data from the given file. Does not use Gdx, so tools
+     * can run headless.
+     * @param file the enemy prototypes json file
+     * @return the factory itself
+     */
+    public static EnemyFactory instantiate(FileHandle file) {
         Json json = new Json();
 
-        EnemyFactory enemyFactory = json.fromJson(EnemyFactory.class, Gdx.files.internal("enemyPrototypes.json"));
+        EnemyFactory enemyFactory = json.fromJson(EnemyFactory.class, file);
 
         return enemyFactory;
     }
 
     /**
-     * Creates an enemy object based on a prototype
+     * Creates an enemy based on a prototype and adds it to the store
+     * @param store the store to add the enemy to
      * @param id the id of the enemy prototype
-     * @return the created enemy object
+     * @param startX starting point x coordinate
+     * @param startY starting point y coordinate
+     * @param movePatternId index of the enemy's move pattern
+     * @return index of the created enemy in the store
      */
-    public Enemy createEnemy(int id){
+    public int createEnemy(EnemyStore store, int id, float startX, float startY, int movePatternId){
         EnemyPrototype prototype = prototypes.get(id);
-        Enemy enemy = new Enemy(prototype.width, prototype.height);
-        enemy.setAnimationId(prototype.animationId);
+        return store.add(prototype.width, prototype.height, prototype.animationId, startX, startY, movePatternId);
+    }
 
-        return enemy;
+    /**
+     * Gets the largest width or height of the enemy prototypes.
+     * @return largest enemy size
+     */
+    public float getMaxSize() {
+        float size = 0;
+        for (EnemyPrototype prototype : prototypes) {
+            size = Math.max(size, Math.max(prototype.width, prototype.height));
+        }
+        return size;
     }
 }
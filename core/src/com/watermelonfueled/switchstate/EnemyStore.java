@@ -0,0 +1,373 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Holds all the enemies of a {@link Level} as parallel primitive arrays, one entry per enemy, so they can be updated
+ * in a single tight loop. Enemies are referred to by their index in the store.
+ */
+public class EnemyStore {
+    public static final int NO_PATTERN = -1;    // pattern index of enemies that are not moving
+
+    public int size;                                // number of enemies
+    public float[] x, y, width, height;             // current bounds
+    public float[] prevX, prevY;                    // position at the previous simulation tick
+    public float[] startX, startY;                  // starting points, the move pattern translates from these
+    public float[] moveTime;                        // time spent moving
+    public int[] pattern;                           // index into patterns, NO_PATTERN if not moving
+    public int[] animationId;                       // see AssetManager
+    public MovePattern[] patterns;                  // MovePatterns shared by the enemies
+
+    private Vector2 translation;                    // translation amount updated according to the movement pattern
+    private int[] sortOrder, groupStart;            // scratch for sortByAnimation, reused
+    private float[] floatScratch;
+    private int[] intScratch;
+
+    /**
+     * Constructor for the store.
+     * @param capacity number of enemies the store can hold
+     * @param patterns move patterns the enemies refer to by index
+     */
+    public EnemyStore(int capacity, MovePattern[] patterns) {
+        this.patterns = patterns;
+        allocate(capacity);
+        translation = new Vector2();
+    }
+
+    /**
+     * Creates the arrays with the given capacity, copying over existing enemies.
+     * @param capacity number of enemies the store can hold
+     */
+    private void allocate(int capacity) {
+        x = copyOf(x, capacity);
+        y = copyOf(y, capacity);
+        prevX = copyOf(prevX, capacity);
+        prevY = copyOf(prevY, capacity);
+        width = copyOf(width, capacity);
+        height = copyOf(height, capacity);
+        startX = copyOf(startX, capacity);
+        startY = copyOf(startY, capacity);
+        moveTime = copyOf(moveTime, capacity);
+        pattern = copyOf(pattern, capacity);
+        animationId = copyOf(animationId, capacity);
+    }
+
+    private float[] copyOf(float[] array, int capacity) {
+        float[] copy = new float[capacity];
+        if (array != null) { System.arraycopy(array, 0, copy, 0, size); }
+        return copy;
+    }
+
+    private int[] copyOf(int[] array, int capacity) {
+        int[] copy = new int[capacity];
+        if (array != null) { System.arraycopy(array, 0, copy, 0, size); }
+        return copy;
+    }
+
+    /**
+     * Makes sure the store can hold at least the given number of enemies.
+     * @param capacity number of enemies
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > x.length) { allocate(capacity); }
+    }
+
+    /**
+     * Removes all the enemies. The arrays are kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies an enemy over another, e.g. to close the gap left by enemies being removed.
+     * @param from index of the enemy to copy
+     * @param to index to copy it to, its enemy is overwritten
+     */
+    public void copy(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        prevX[to] = prevX[from];
+        prevY[to] = prevY[from];
+        width[to] = width[from];
+        height[to] = height[from];
+        startX[to] = startX[from];
+        startY[to] = startY[from];
+        moveTime[to] = moveTime[from];
+        pattern[to] = pattern[from];
+        animationId[to] = animationId[from];
+    }
+
+    /**
+     * Adds an enemy to the store. The enemy is placed at its starting point.
+     * @param width enemy width
+     * @param height enemy height
+     * @param animationId the id of the animation. See {@link AssetManager}
+     * @param startX starting point x coordinate
+     * @param startY starting point y coordinate
+     * @param pattern index of the enemy's move pattern, or NO_PATTERN
+     * @return index of the added enemy
+     */
+    public int add(float width, float height, int animationId, float startX, float startY, int pattern) {
+        int i = size++;
+        this.x[i] = prevX[i] = this.startX[i] = startX;
+        this.y[i] = prevY[i] = this.startY[i] = startY;
+        this.width[i] = width;
+        this.height[i] = height;
+        this.animationId[i] = animationId;
+        this.pattern[i] = pattern;
+        moveTime[i] = 0f;
+        return i;
+    }
+
+    /**
+     * Updates the positions of all enemies according to their movement patterns.
+     * @param delta time (s) since last update
+     * @see GameScreen#render(float)
+     */
+    public void move(float delta) {
+        move(0, size, delta, translation);
+    }
+
+    /**
+     * Updates the positions of a range of enemies. Ranges that do not overlap can be updated concurrently as long
+     * as each uses its own translation vector.
+     * @param from index of the first enemy
+     * @param to index after the last enemy
+     * @param delta time (s) since last update
+     * @param translation vector used for calculating the translation, see {@link MovePattern#update}
+     */
+    public void move(int from, int to, float delta, Vector2 translation) {
+        for (int i = from; i < to; i++) {
+            move(i, delta, translation);
+        }
+    }
+
+    /**
+     * Updates the positions of some of the enemies according to their movement patterns.
+     * @param indices indices of the enemies
+     * @param count number of indices used
+     * @param delta time (s) since last update
+     */
+    public void move(int[] indices, int count, float delta) {
+        move(indices, 0, count, delta, translation);
+    }
+
+    /**
+     * Updates the positions of some of the enemies. Index ranges that do not overlap can be updated concurrently as
+     * long as each uses its own translation vector.
+     * @param indices indices of the enemies
+     * @param from index into indices of the first enemy
+     * @param to index into indices after the last enemy
+     * @param delta time (s) since last update
+     * @param translation vector used for calculating the translation, see {@link MovePattern#update}
+     */
+    public void move(int[] indices, int from, int to, float delta, Vector2 translation) {
+        for (int j = from; j < to; j++) {
+            move(indices[j], delta, translation);
+        }
+    }
+
+    /**
+     * Updates the enemy's position according to its movement pattern.
+     * @param i index of the enemy
+     * @param delta time (s) since last update
+     */
+    public void move(int i, float delta) {
+        move(i, delta, translation);
+    }
+
+    /**
+     * Updates the enemy's position according to its movement pattern.
+     * @param i index of the enemy
+     * @param delta time (s) since last update
+     * @param translation vector used for calculating the translation
+     */
+    private void move(int i, float delta, Vector2 translation) {
+        if (pattern[i] == NO_PATTERN) { return; } //no movement pattern
+        moveTime[i] += delta;
+        MovePattern movePattern = patterns[pattern[i]];
+        if (!movePattern.update(moveTime[i], translation)) { // update translation vector
+            movePattern.getEndPoint(translation);   // non-looping pattern has reached its end
+        }
+        // a pure function of the move time, so it matches resolve(i) exactly
+        x[i] = startX[i] + translation.x;
+        y[i] = startY[i] + translation.y;
+    }
+
+    /**
+     * Sets the enemy's position for its current move time, for when the move time was set directly instead of
+     * advanced by {@link #move(int, float)}. The previous tick's position is set to it too.
+     * @param i index of the enemy
+     */
+    public void resolve(int i) {
+        if (pattern[i] != NO_PATTERN) {
+            MovePattern movePattern = patterns[pattern[i]];
+            if (!movePattern.update(moveTime[i], translation)) {
+                movePattern.getEndPoint(translation);   // non-looping pattern has reached its end
+            }
+            x[i] = startX[i] + translation.x;
+            y[i] = startY[i] + translation.y;
+        }
+        prevX[i] = x[i];
+        prevY[i] = y[i];
+    }
+
+    /**
+     * Saves the current positions as the previous tick's positions. Called before each simulation tick.
+     */
+    public void savePositions() {
+        System.arraycopy(x, 0, prevX, 0, size);
+        System.arraycopy(y, 0, prevY, 0, size);
+    }
+
+    /**
+     * Saves the current positions of some of the enemies as the previous tick's positions.
+     * @param indices indices of the enemies
+     * @param count number of indices used
+     */
+    public void savePositions(int[] indices, int count) {
+        for (int j = 0; j < count; j++) {
+            int i = indices[j];
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+        }
+    }
+
+    /**
+     * Gets the x coordinate to draw the enemy at, interpolated between the previous and current tick.
+     * @param i index of the enemy
+     * @param alpha progress from the previous tick (0) to the current tick (1)
+     * @return interpolated x coordinate
+     */
+    public float getDrawX(int i, float alpha) { return prevX[i] + (x[i] - prevX[i]) * alpha; }
+
+    /**
+     * Gets the y coordinate to draw the enemy at, interpolated between the previous and current tick.
+     * @param i index of the enemy
+     * @param alpha progress from the previous tick (0) to the current tick (1)
+     * @return interpolated y coordinate
+     */
+    public float getDrawY(int i, float alpha) { return prevY[i] + (y[i] - prevY[i]) * alpha; }
+
+    /**
+     * Reorders the enemies so those sharing an animation are next to each other, keeping their relative order. The
+     * renderer then resolves each animation's keyframe once per group instead of once per enemy.
+     * @param carried array indexed by enemy that is reordered along with the store, or null
+     */
+    public void sortByAnimation(int[] carried) {
+        int groups = 0;
+        for (int i = 0; i < size; i++) { groups = Math.max(groups, animationId[i] + 1); }
+        if (groups <= 1) { return; }
+        // counting sort, order[destination] = source
+        // scratch arrays only grow, so re-sorting as chunks stream in does not allocate
+        if (groupStart == null || groupStart.length < groups + 1) { groupStart = new int[groups + 1]; }
+        if (sortOrder == null || sortOrder.length < size) {
+            sortOrder = new int[size];
+            floatScratch = new float[size];
+            intScratch = new int[size];
+        }
+        for (int g = 0; g <= groups; g++) { groupStart[g] = 0; }
+        for (int i = 0; i < size; i++) { groupStart[animationId[i] + 1]++; }
+        for (int g = 0; g < groups; g++) { groupStart[g + 1] += groupStart[g]; }
+        for (int i = 0; i < size; i++) { sortOrder[groupStart[animationId[i]]++] = i; }
+
+        permute(x);
+        permute(y);
+        permute(prevX);
+        permute(prevY);
+        permute(width);
+        permute(height);
+        permute(startX);
+        permute(startY);
+        permute(moveTime);
+        permute(pattern);
+        permute(animationId);
+        if (carried != null) { permute(carried); }
+    }
+
+    /**
+     * Reorders the enemies' entries of an array by the order sortByAnimation found.
+     * @param array array indexed by enemy
+     */
+    private void permute(float[] array) {
+        for (int i = 0; i < size; i++) { floatScratch[i] = array[sortOrder[i]]; }
+        System.arraycopy(floatScratch, 0, array, 0, size);
+    }
+
+    private void permute(int[] array) {
+        for (int i = 0; i < size; i++) { intScratch[i] = array[sortOrder[i]]; }
+        System.arraycopy(intScratch, 0, array, 0, size);
+    }
+
+    /**
+     * Stops the enemy from moving any further.
+     * @param i index of the enemy
+     */
+    public void stop(int i) {
+        pattern[i] = NO_PATTERN;
+    }
+
+    /**
+     * Stops the enemy where it was at an earlier move time, e.g. the exact time it touched the player during the
+     * last step. The previous tick's position is kept so drawing still interpolates from it.
+     * @param i index of the enemy
+     * @param moveTime move time to stop at, no later than the current one
+     */
+    public void stopAt(int i, float moveTime) {
+        if (pattern[i] == NO_PATTERN) { return; }
+        this.moveTime[i] = moveTime;
+        MovePattern movePattern = patterns[pattern[i]];
+        if (!movePattern.update(moveTime, translation)) {
+            movePattern.getEndPoint(translation);
+        }
+        x[i] = startX[i] + translation.x;
+        y[i] = startY[i] + translation.y;
+        pattern[i] = NO_PATTERN;
+    }
+
+    /**
+     * Checks for collision between the enemy and a GameRectangle.
+     * @param i index of the enemy
+     * @param obj the other object
+     * @return true if there is a collision, false otherwise
+     * @see GameRectangle#collides(GameRectangle)
+     */
+    public boolean collides(int i, GameRectangle obj) {
+        return !(x[i] + width[i] < obj.getX() || x[i] > obj.getX() + obj.getWidth()
+                || y[i] + height[i] < obj.getY() || y[i] > obj.getY() + obj.getHeight());
+    }
+
+    /**
+     * Sorts enemy indices in place, e.g. a list of enemies found by a query back into store order. A heap sort, as
+     * {@link java.util.Arrays#sort(int[], int, int)} allocates a buffer when the indices are partly sorted already.
+     * @param indices the indices
+     * @param count number of indices to sort, from the start
+     */
+    public static void sortIndices(int[] indices, int count) {
+        for (int i = count / 2 - 1; i >= 0; i--) { siftDown(indices, i, count); }
+        for (int end = count - 1; end > 0; end--) {
+            int largest = indices[0];
+            indices[0] = indices[end];
+            indices[end] = largest;
+            siftDown(indices, 0, end);
+        }
+    }
+
+    /**
+     * Moves an index down the heap until both its children are smaller.
+     * @param heap the heap, children of i at 2i+1 and 2i+2
+     * @param i position of the index to move
+     * @param count size of the heap
+     */
+    private static void siftDown(int[] heap, int i, int count) {
+        int value = heap[i];
+        for (int child = i * 2 + 1; child < count; child = i * 2 + 1) {
+            if (child + 1 < count && heap[child + 1] > heap[child]) { child++; }
+            if (heap[child] <= value) { break; }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+}
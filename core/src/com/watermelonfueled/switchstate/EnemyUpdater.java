@@ -0,0 +1,17 @@
+package com.watermelonfueled.switchstate;
+
+/**
+ * Moves the active enemies of an {@link EnemyStore} for a simulation step. Lets platforms swap in a different update
+ * strategy, see {@link World#setEnemyUpdater(EnemyUpdater)}.
+ */
+public interface EnemyUpdater {
+
+    /**
+     * Updates the positions of some of the enemies according to their movement patterns.
+     * @param enemies the enemies
+     * @param indices indices of the enemies to move
+     * @param count number of indices used
+     * @param delta time (s) since last update
+     */
+    void move(EnemyStore enemies, int[] indices, int count, float delta);
+}
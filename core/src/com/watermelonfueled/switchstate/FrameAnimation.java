@@ -0,0 +1,77 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * A compact frame animation. Each distinct frame is stored once along with the number of frames it is shown for,
+ * instead of repeating the frame for every frame it is shown like libGDX's Animation does. Frames are picked the same
+ * way as Animation for the normal, loop and ping-pong play modes.
+ */
+public class FrameAnimation {
+    public static final int NORMAL = 3, LOOP = 1, LOOP_PINGPONG = 2;     // play modes, see AnimationPrototype
+
+    private final TextureRegion[] regions;      // distinct frames in order
+    private final int[] runEnds;                // frame number each region is shown until, exclusive
+    private final int frameCount;
+    private final float frameDuration;
+    private final int playMode;
+
+    /**
+     * Constructor for the animation.
+     * @param frameDuration time each frame is shown for
+     * @param regions the distinct frames in order
+     * @param runLengths number of frames each region is shown for
+     * @param playMode NORMAL, LOOP or LOOP_PINGPONG
+     */
+    public FrameAnimation(float frameDuration, TextureRegion[] regions, int[] runLengths, int playMode) {
+        this.frameDuration = frameDuration;
+        this.regions = regions;
+        this.playMode = playMode;
+        runEnds = new int[runLengths.length];
+        int frames = 0;
+        for (int i = 0; i < runLengths.length; i++) {
+            frames += runLengths[i];
+            runEnds[i] = frames;
+        }
+        frameCount = frames;
+    }
+
+    /**
+     * Gets the frame shown at a time.
+     * @param stateTime time since the animation started
+     * @return the frame
+     */
+    public TextureRegion getKeyFrame(float stateTime) {
+        int frame = getKeyFrameIndex(stateTime);
+        int run = 0;
+        while (runEnds[run] <= frame) { run++; }    // few runs per animation
+        return regions[run];
+    }
+
+    /**
+     * Gets the number of the frame shown at a time.
+     * @param stateTime time since the animation started
+     * @return the frame number, from 0 to frame count - 1
+     */
+    public int getKeyFrameIndex(float stateTime) {
+        if (frameCount == 1) { return 0; }
+        int frame = (int) (stateTime / frameDuration);
+        switch (playMode) {
+            case LOOP:
+                return frame % frameCount;
+            case LOOP_PINGPONG:
+                frame = frame % (frameCount * 2 - 2);
+                return frame < frameCount ? frame : frameCount - 2 - (frame - frameCount);
+            default:
+                return Math.min(frameCount - 1, frame);
+        }
+    }
+
+    /**
+     * Gets the total duration of one run through the frames.
+     * @return duration
+     */
+    public float getAnimationDuration() {
+        return frameCount * frameDuration;
+    }
+}
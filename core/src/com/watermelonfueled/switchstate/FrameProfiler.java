@@ -0,0 +1,201 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.StringBuilder;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Times the phases of each frame into {@link LatencyHistogram}s. A phase may run several times in a frame, once per
+ * simulation tick, and its times are summed into the frame's total for it. Only frames a phase ran in are recorded
+ * for it, so e.g. paused frames do not add zero times to the simulation phases. Timing does not allocate.
+ * <p>
+ * The histograms can be shown on screen, see {@link #getOverlayText()}, and are periodically appended to a csv file
+ * in local storage and reset, so each row covers one interval. Counters, e.g. collision checks, are summed per frame
+ * and the last frame's values are shown on screen.
+ */
+public class FrameProfiler {
+    private static final String TAG = "FRAME PROFILER";
+    public static final int ENEMY_UPDATE = 0, PLAYER_MOVE = 1, ENEMY_COLLISION = 2, CAMERA = 3, RENDER = 4,
+            STAGE = 5, FRAME = 6;                   // phases
+    private static final String[] PHASE_NAMES = {"enemy update", "player move", "enemy collision", "camera",
+            "render", "stage", "frame"};
+    public static final int COLLISION_CHECKS = 0;  // counters
+    private static final String[] COUNTER_NAMES = {"collision checks"};
+    public static final String DUMP_FILE = "profile.csv";
+    private static final String DUMP_HEADER =           // first row of a new dump file, see dump()
+            "time_ms,platform,width,height,phase,frames,mean_us,p50_us,p95_us,p99_us,max_us\n";
+    public static final float DEFAULT_DUMP_INTERVAL = 60f;     // seconds
+    private static final float OVERLAY_INTERVAL = 0.5f;        // seconds between overlay text updates
+
+    private final LatencyHistogram[] histograms;
+    private final long[] started, frameTotals;      // start of the running phase, time spent this frame (ns)
+    private final boolean[] ran;                    // phases begun this frame
+    private final int[] frameCounts, lastCounts;    // counter totals of this frame and the last one
+    private boolean enabled, overlayVisible;
+    private float dumpInterval, sinceDump, sinceOverlay;
+    private final StringBuilder overlayText;        // reused, rebuilt every overlay interval
+
+    /**
+     * Constructor for an enabled profiler with the overlay hidden.
+     */
+    public FrameProfiler() {
+        histograms = new LatencyHistogram[PHASE_NAMES.length];
+        for (int i = 0; i < histograms.length; i++) { histograms[i] = new LatencyHistogram(); }
+        started = new long[PHASE_NAMES.length];
+        frameTotals = new long[PHASE_NAMES.length];
+        ran = new boolean[PHASE_NAMES.length];
+        frameCounts = new int[COUNTER_NAMES.length];
+        lastCounts = new int[COUNTER_NAMES.length];
+        overlayText = new StringBuilder(512);
+        enabled = true;
+        dumpInterval = DEFAULT_DUMP_INTERVAL;
+    }
+
+    /**
+     * Starts timing a phase.
+     * @param phase the phase, e.g. ENEMY_UPDATE
+     */
+    public void begin(int phase) {
+        if (enabled) {
+            ran[phase] = true;
+            started[phase] = TimeUtils.nanoTime();
+        }
+    }
+
+    /**
+     * Stops timing a phase, adding the time since {@link #begin(int)} to the frame's total for it.
+     * @param phase the phase, e.g. ENEMY_UPDATE
+     */
+    public void end(int phase) {
+        if (enabled) { frameTotals[phase] += TimeUtils.nanoTime() - started[phase]; }
+    }
+
+    /**
+     * Adds to a counter's total for the frame.
+     * @param counter the counter, e.g. COLLISION_CHECKS
+     * @param amount amount to add
+     */
+    public void count(int counter, int amount) {
+        if (enabled) { frameCounts[counter] += amount; }
+    }
+
+    /**
+     * Ends the frame, recording the total of each phase that ran in it. Also updates the overlay text and writes the dump file when
+     * they are due.
+     * @param delta time (s) since last frame
+     */
+    public void endFrame(float delta) {
+        if (!enabled) { return; }
+        for (int i = 0; i < frameTotals.length; i++) {
+            if (ran[i]) { histograms[i].record(frameTotals[i]); }
+            frameTotals[i] = 0;
+            ran[i] = false;
+        }
+        for (int i = 0; i < frameCounts.length; i++) {
+            lastCounts[i] = frameCounts[i];
+            frameCounts[i] = 0;
+        }
+        sinceOverlay += delta;
+        if (overlayVisible && sinceOverlay >= OVERLAY_INTERVAL) {
+            sinceOverlay = 0;
+            buildOverlayText();
+        }
+        sinceDump += delta;
+        if (dumpInterval > 0 && sinceDump >= dumpInterval) {
+            sinceDump = 0;
+            dump();
+        }
+    }
+
+    /**
+     * Rebuilds the overlay text: p50/p95/p99/max of each phase in microseconds, then the last frame's counters.
+     */
+    private void buildOverlayText() {
+        overlayText.setLength(0);
+        overlayText.append("phase p50/p95/p99/max us");
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            overlayText.append('\n').append(PHASE_NAMES[i]).append(' ')
+                    .append(histogram.getPercentile(0.5f) / 1000).append('/')
+                    .append(histogram.getPercentile(0.95f) / 1000).append('/')
+                    .append(histogram.getPercentile(0.99f) / 1000).append('/')
+                    .append(histogram.getMax() / 1000);
+        }
+        for (int i = 0; i < lastCounts.length; i++) {
+            overlayText.append('\n').append(COUNTER_NAMES[i]).append(' ').append(lastCounts[i]);
+        }
+    }
+
+    /**
+     * Appends the histograms to the dump file in local storage, one row per phase, then resets them. A new file
+     * starts with a header row. Columns: time (ms since epoch), platform, screen width, screen height, phase, frames
+     * the phase ran in, mean, p50, p95, p99, max, durations in microseconds.
+     */
+    public void dump() {
+        if (!Gdx.files.isLocalStorageAvailable()) { return; }
+        FileHandle file = Gdx.files.local(DUMP_FILE);
+        java.lang.StringBuilder rows = new java.lang.StringBuilder();
+        if (!file.exists() || file.length() == 0) { rows.append(DUMP_HEADER); }
+        long now = TimeUtils.millis();
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            rows.append(now).append(',').append(Gdx.app.getType()).append(',')
+                    .append(Gdx.graphics.getWidth()).append(',').append(Gdx.graphics.getHeight()).append(',')
+                    .append(PHASE_NAMES[i]).append(',').append(histogram.getCount()).append(',')
+                    .append(histogram.getMean() / 1000).append(',')
+                    .append(histogram.getPercentile(0.5f) / 1000).append(',')
+                    .append(histogram.getPercentile(0.95f) / 1000).append(',')
+                    .append(histogram.getPercentile(0.99f) / 1000).append(',')
+                    .append(histogram.getMax() / 1000).append('\n');
+            histogram.reset();
+        }
+        file.writeString(rows.toString(), true);
+        Gdx.app.debug(TAG, "Wrote frame timings to "+DUMP_FILE);
+    }
+
+    /**
+     * Gets the histogram of a phase's time per frame.
+     * @param phase the phase, e.g. ENEMY_UPDATE
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(int phase) { return histograms[phase]; }
+
+    /**
+     * Gets a counter's total for the last frame.
+     * @param counter the counter, e.g. COLLISION_CHECKS
+     * @return the total
+     */
+    public int getLastCount(int counter) { return lastCounts[counter]; }
+
+    /**
+     * Gets the overlay text, updated twice a second while the overlay is visible.
+     * @return the text
+     */
+    public CharSequence getOverlayText() { return overlayText; }
+
+    /**
+     * Enables or disables timing. Phases are not timed and nothing is recorded while disabled.
+     * @param enabled true to time phases
+     */
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public boolean isEnabled() { return enabled; }
+
+    /**
+     * Shows or hides the timings on screen.
+     * @param overlayVisible true to show the timings
+     */
+    public void setOverlayVisible(boolean overlayVisible) {
+        this.overlayVisible = overlayVisible;
+        if (overlayVisible) { buildOverlayText(); }
+    }
+
+    public boolean isOverlayVisible() { return enabled && overlayVisible; }
+
+    /**
+     * Sets how often the timings are written to the dump file.
+     * @param seconds time between dumps, 0 to never dump
+     */
+    public void setDumpInterval(float seconds) { dumpInterval = seconds; }
+}
@@ -1,33 +1,33 @@
 package com.watermelonfueled.switchstate;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputAdapter;
 import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.utils.TimeUtils;
 
 /**
  * Handles player control by the user. Specifically handles touch down, dragged and up motions. Manages input in screen coordinates (
  */
 public class GameInput extends InputAdapter {
     private final String TAG = "GAME INPUT";    // log tag
-    private final float MAX_DISTANCE = 40;      // max distance from touchdown point for max player speed.
-    private Vector2 down;                       // touch down position
+    private final long startTime;               // event times are taken from here (ns)
 
     private GameScreen gameScreen;
-    private Player player;
+    private InputSampler sampler;               // latest touch, read by the simulation once per tick
 
     private Actor controllerFront, controllerBack;  // analog stick ui
 
     /**
      * Constructor for gameinput
-     * @param player {@link Player}
+     * @param sampler {@link InputSampler} the touch events are recorded in
      * @param gameScreen {@link GameScreen}
      */
-    public GameInput(Player player, GameScreen gameScreen, Actor controllerFront, Actor controllerBack) {
+    public GameInput(InputSampler sampler, GameScreen gameScreen, Actor controllerFront, Actor controllerBack) {
         this.gameScreen = gameScreen;
-        this.player = player;
-        down = new Vector2();
+        this.sampler = sampler;
+        startTime = TimeUtils.nanoTime();
         this.controllerFront = controllerFront;
         this.controllerBack = controllerBack;
         controllerFront.setOrigin(controllerFront.getWidth()/2,controllerFront.getHeight()/2);
@@ -35,7 +35,21 @@ public class GameInput extends InputAdapter {
     }
 
     /**
-     * Called when screen is touched initially. Sets player state to moving.
+     * Called when a key is pressed. F3 shows or hides the frame timings, see {@link FrameProfiler}.
+     * @param keycode the key
+     * @return true if the key was handled
+     */
+    @Override
+    public boolean keyDown(int keycode) {
+        if (keycode == Input.Keys.F3) {
+            gameScreen.profiler.setOverlayVisible(!gameScreen.profiler.isOverlayVisible());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called when screen is touched initially. Records the touch, the player starts moving on the next tick.
      * @param x x coordinate
      * @param y y coordinate
      * @param pointer unused
@@ -44,10 +58,9 @@ public class GameInput extends InputAdapter {
      */
     @Override
     public boolean touchDown (int x, int y, int pointer, int button) {
-        down.set(x, y);
         switch (gameScreen.gameState){
             case RUNNING:
-                gameScreen.setMoving();
+                sampler.touchDown(x, y, eventTime());
                 controllerBack.setPosition(x - controllerBack.getOriginX(),
                         controllerBack.getStage().getHeight() - y - controllerBack.getOriginY());
                 controllerFront.setPosition(x - controllerFront.getOriginX(),
@@ -62,7 +75,8 @@ public class GameInput extends InputAdapter {
     }
 
     /**
-     * Called when finger is dragged on screen. Moves the player in the direction and speed proportional to how far the finger was dragged from touch down location.
+     * Called when finger is dragged on screen. Only records the latest position, the player's direction and speed
+     * are updated from it on the next tick, see {@link InputSampler#apply(World)}.
      * @param x x coordinate
      * @param y y coordinate
      * @param pointer unused
@@ -72,11 +86,7 @@ public class GameInput extends InputAdapter {
     public boolean touchDragged(int x, int y, int pointer) {
         switch (gameScreen.gameState){
             case RUNNING:
-                float angle = MathUtils.atan2(y - down.y, down.x - x);
-                float clampedDistRatio = MathUtils.clamp(down.dst(x, y),0,MAX_DISTANCE) / MAX_DISTANCE;
-                player.setDirection(angle, clampedDistRatio);
-                controllerFront.setPosition(clampedDistRatio * -16 * MathUtils.cos(angle) + controllerBack.getX()+controllerBack.getOriginX()-controllerFront.getOriginX(),
-                        clampedDistRatio * 16 * MathUtils.sin(-angle) + controllerBack.getY()+controllerBack.getOriginY()-controllerFront.getOriginY());
+                sampler.touchDragged(x, y, eventTime());
                 break;
             case PAUSED:
             case GAMEOVER:
@@ -85,7 +95,8 @@ public class GameInput extends InputAdapter {
     }
 
     /**
-     * Called when finger lifts off screen. Stops the player and sets player state to frozen.
+     * Called when finger lifts off screen. Records the touch ending, the player is stopped and frozen on the next
+     * tick.
      * @param x x coordinate
      * @param y y coordinate
      * @param pointer unused
@@ -97,8 +108,7 @@ public class GameInput extends InputAdapter {
 
         switch (gameScreen.gameState){
             case RUNNING:
-                gameScreen.setFrozen();
-                player.stop();
+                sampler.touchUp(eventTime());
                 controllerBack.setVisible(false);
                 controllerFront.setVisible(false);
                 break;
@@ -111,4 +121,22 @@ public class GameInput extends InputAdapter {
         }
         return true;
     }
+
+    /**
+     * Moves the analog stick to the direction and speed given to the player. Called once per frame.
+     */
+    public void updateController() {
+        if (!sampler.isTouching()) { return; }
+        float angle = sampler.getAngle(), ratio = sampler.getDistanceRatio();
+        controllerFront.setPosition(ratio * -16 * MathUtils.cos(angle) + controllerBack.getX()+controllerBack.getOriginX()-controllerFront.getOriginX(),
+                ratio * 16 * MathUtils.sin(-angle) + controllerBack.getY()+controllerBack.getOriginY()-controllerFront.getOriginY());
+    }
+
+    /**
+     * Gets the time of an event being handled.
+     * @return time since this was created (s)
+     */
+    private float eventTime() {
+        return (TimeUtils.nanoTime() - startTime) / 1000000000f;
+    }
 }
@@ -4,6 +4,7 @@ package com.watermelonfueled.switchstate;
  * Superclass of interacting objects in the game. Is a basic rectangle.
  */
 public class GameRectangle {
+    private static final float CONTACT_EPSILON = 0.001f;   // tolerance for objects resting against each other
     private float x,y,width,height;
 
     /**
@@ -39,6 +40,16 @@ public class GameRectangle {
         this.y = y;
     }
 
+    /**
+     * Sets the size
+     * @param width width
+     * @param height height
+     */
+    public void setSize(float width, float height) {
+        this.width = width;
+        this.height = height;
+    }
+
     /**
      * Translates GameRectangle by x and y
      * @param x amount to translate in x axis
@@ -86,6 +97,40 @@ public class GameRectangle {
         }
     }
 
+    /**
+     * Swept test along the x axis. Finds how far this can move before touching the obstacle.
+     * @param obj the obstacle
+     * @param dx intended movement along the x axis
+     * @return the movement allowed before contact, dx if the obstacle is not in the way
+     */
+    public float sweepX(GameRectangle obj, float dx) {
+        // obstacle not in the path if there is no overlap along y, resting against it does not count
+        if (y >= obj.y + obj.height - CONTACT_EPSILON || y + height <= obj.y + CONTACT_EPSILON) { return dx; }
+        if (dx > 0 && x + width <= obj.x + CONTACT_EPSILON) {
+            return Math.min(dx, Math.max(0, obj.x - (x + width)));
+        } else if (dx < 0 && x >= obj.x + obj.width - CONTACT_EPSILON) {
+            return Math.max(dx, Math.min(0, obj.x + obj.width - x));
+        }
+        return dx;
+    }
+
+    /**
+     * Swept test along the y axis. Finds how far this can move before touching the obstacle.
+     * @param obj the obstacle
+     * @param dy intended movement along the y axis
+     * @return the movement allowed before contact, dy if the obstacle is not in the way
+     */
+    public float sweepY(GameRectangle obj, float dy) {
+        // obstacle not in the path if there is no overlap along x, resting against it does not count
+        if (x >= obj.x + obj.width - CONTACT_EPSILON || x + width <= obj.x + CONTACT_EPSILON) { return dy; }
+        if (dy > 0 && y + height <= obj.y + CONTACT_EPSILON) {
+            return Math.min(dy, Math.max(0, obj.y - (y + height)));
+        } else if (dy < 0 && y >= obj.y + obj.height - CONTACT_EPSILON) {
+            return Math.max(dy, Math.min(0, obj.y + obj.height - y));
+        }
+        return dy;
+    }
+
     /**
      * Gets the width.
      * @return the width
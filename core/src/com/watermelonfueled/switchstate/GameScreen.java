@@ -21,15 +21,23 @@ public class GameScreen implements Screen {
     GameState gameState;
 
     private Group gameUI, pauseMenu;
-    private Button pauseButton, resumeButton, mainMenuButton, controllerFront, controllerBack;
+    private Button pauseButton, resumeButton, restartButton, mainMenuButton, controllerFront, controllerBack;
 
     private Level level;
 
     public Player player;
-    public enum PlayerState { FROZEN, MOVING }
-    PlayerState playerState;
+    World world;
+    public final FrameProfiler profiler;    // times the phases of each frame
+    final InputSampler input;               // latest touch input, applied once per tick
+    private GameInput gameInput;
 
-    public volatile float frozenTime, gameTime, frozenTimeMax;
+    public volatile float gameTime;
+    private final TickLoop loop;            // advances the world in fixed ticks
+
+    public static final String REPLAY_FILE = "replay.bin";  // last session, see Replay
+    private boolean recordingEnabled;
+    private InputRecording recording;       // session being recorded, null if not recording
+    private InputRecording recorder;        // reused for every session's recording, null until first recorded
 
     /**
      * Constructor sets up game in (selected) level.
@@ -40,14 +48,17 @@ public class GameScreen implements Screen {
         this.game = game;
         camera = game.camera;
         player = new Player();
-        frozenTime = frozenTimeMax = 5f;
+        world = new World(player);
+        profiler = new FrameProfiler();
+        input = new InputSampler();
+        world.setProfiler(profiler);
+        loop = new TickLoop(world, input);
+        recordingEnabled = false;
 
         setupUI();
         setupInput();
         setGamePaused();
         setFrozen();
-
-        level = new Level();
     }
 
     /**
@@ -56,12 +67,13 @@ public class GameScreen implements Screen {
     private void setupInput() {
         InputMultiplexer multiplexer = new InputMultiplexer();
         multiplexer.addProcessor(game.stage);                   // stage for UI
-        multiplexer.addProcessor(new GameInput(player, this, controllerFront, controllerBack));  // player control
+        gameInput = new GameInput(input, this, controllerFront, controllerBack);
+        multiplexer.addProcessor(gameInput);                    // player control
         Gdx.input.setInputProcessor(multiplexer);
     }
 
     /**
-     * Creates the UI: pause, resume, main menu
+     * Creates the UI: pause, resume, restart, main menu
      */
     private void setupUI() {
         Gdx.app.debug(TAG, "Creating game UI...");
@@ -100,11 +112,23 @@ public class GameScreen implements Screen {
             }
         });
 
+        restartButton = new Button(AssetManager.resumeButton);
+        restartButton.setText("RESTART");
+        restartButton.setSize(pauseMenuButtonWidth, pauseMenuButtonWidth / 4);
+        restartButton.setPosition((game.stage.getWidth() - pauseMenuButtonWidth) / 2,
+                game.stage.getHeight() / 2 - 2f - pauseMenuButtonWidth / 4);
+        restartButton.addListener(new ClickListener() {
+            @Override
+            public void clicked(InputEvent event, float x, float y) {
+                restartLevel();
+            }
+        });
+
         mainMenuButton = new Button(AssetManager.resumeButton);
         mainMenuButton.setText("MAIN MENU");
         mainMenuButton.setSize(pauseMenuButtonWidth, pauseMenuButtonWidth / 4);
         mainMenuButton.setPosition((game.stage.getWidth() - pauseMenuButtonWidth) / 2,
-                game.stage.getHeight() / 2 - 2f - pauseMenuButtonWidth / 4);
+                game.stage.getHeight() / 2 - 6f - pauseMenuButtonWidth / 2);
         mainMenuButton.addListener(new ClickListener() {
             @Override
             public void clicked(InputEvent event, float x, float y) {
@@ -114,6 +138,7 @@ public class GameScreen implements Screen {
         });
         pauseMenu = new Group();
         pauseMenu.addActor(resumeButton);
+        pauseMenu.addActor(restartButton);
         pauseMenu.addActor(mainMenuButton);
 
         //TODO confirm dialog when moving to main menu
@@ -125,92 +150,108 @@ public class GameScreen implements Screen {
     }
 
     /**
-     * Loads the level
-     * @param levelId the level to load
+     * Sets the level to play. Sets up graphics for the level so must be called on the render thread.
+     * @param level the loaded level, see {@link LoadingScreen}
      */
-    public void loadLevel(int levelId){
-        level.loadLevel(levelId, player);
+    public void setLevel(Level level){
+        saveRecording();
+        this.level = level;
+        world.setLevel(level);
+        loop.reset();
         game.renderer.setLevel(level);
+        if (recordingEnabled) {
+            if (recorder == null) { recorder = new InputRecording(); }
+            recorder.start(game.currentLevel, loop.getTickLength());
+            recording = recorder;
+            input.setRecording(recording);
+        }
+    }
+
+    /**
+     * Restarts the current level from its start. The level's definition is reused, so nothing is loaded again.
+     */
+    public void restartLevel(){
+        Gdx.app.log(TAG, "Restarting level...");
+        level.reset();
+        world.setLevel(level);
+        loop.reset();
+        if (recording != null) { recording.restart(); }
+        setGameRunning();
+    }
+
+    /**
+     * Sets how many times per second the game is simulated, independent of the frame rate.
+     * @param ticksPerSecond simulation rate
+     */
+    public void setTickRate(float ticksPerSecond) {
+        loop.setTickRate(ticksPerSecond);
+    }
+
+    /**
+     * Gets the time simulated per tick.
+     * @return tick length (s)
+     */
+    public float getTickLength() { return loop.getTickLength(); }
+
+    /**
+     * Sets whether play sessions are recorded. Each level's session is written to {@link #REPLAY_FILE} in local
+     * storage when the level is left, replacing the previous one. Takes effect from the next level. Off by default,
+     * it is meant for debugging, see {@link ReplayRunner}.
+     * @param recordingEnabled true to record sessions
+     */
+    public void setRecordingEnabled(boolean recordingEnabled) {
+        this.recordingEnabled = recordingEnabled;
+    }
+
+    /**
+     * Ends the session being recorded, if any, and writes it to local storage.
+     */
+    private void saveRecording() {
+        if (recording == null) { return; }
+        byte[] log = recording.finish(world);
+        recording = null;
+        input.setRecording(null);
+        if (Gdx.files.isLocalStorageAvailable()) {
+            Gdx.files.local(REPLAY_FILE).writeBytes(log, false);
+            Gdx.app.debug(TAG, "Saved session recording, " + log.length + " bytes.");
+        }
     }
 
     /**
      * Called when screen renders itself. Updates the game and all game elements if running and draws them.
+     * The game is updated in fixed ticks, see {@link TickLoop}.
      * @param delta time (s) since last render call
      */
     public void render(float delta) {
+        profiler.begin(FrameProfiler.FRAME);
         switch (gameState){
             case RUNNING:
                 gameTime += delta;
-                game.renderer.draw(gameTime);
-                update(delta);
+                loop.advance(delta);
+                gameInput.updateController();
+                profiler.begin(FrameProfiler.CAMERA);
+                repositionCamera();
+                world.stream(camera.position.x, camera.position.y);
+                profiler.end(FrameProfiler.CAMERA);
+                if (recording != null) { recording.frame(delta, camera.position.x, camera.position.y); }
+                game.renderer.draw(gameTime, loop.getAlpha());
                 break;
             case PAUSED:
             case GAMEOVER:
-                game.renderer.draw(gameTime);
-                break;
-        }
-    }
-
-    /**
-     * Update game elements and checks interactions after movements.
-     * @param delta time (s) since last update
-     */
-    private void update(float delta) {
-        switch (playerState) {
-            case FROZEN:
-                for (Enemy enemy : level.enemies) {
-                    enemy.move(delta);
-                }
-                frozenTime -= delta;
-                if (frozenTime <= 0) { frozenTime = 0; setMoving(); }
-                break;
-            case MOVING:
-                frozenTime = MathUtils.clamp(frozenTime+delta,0,frozenTimeMax);
-                player.moveX(delta);
-                for (GameRectangle wall : level.walls) {
-                    if (wall.collides(player)) {
-                        player.cancelMoveX(delta);
-                        break;
-                    }
-                }
-                player.moveY(delta);
-                for (GameRectangle wall : level.walls) {
-                    if (wall.collides(player)) {
-                        player.cancelMoveY(delta);
-                        break;
-                    }
-                }
-                checkBounds();
-                //enemies
-                for (Enemy enemy : level.enemies) {
-                    if (enemy.collides(player)) {
-                        enemy.setPattern(null);
-                    } else {
-                        enemy.move(delta);
-                    }
-                }
-                repositionCamera();
+                game.renderer.draw(gameTime, loop.getAlpha());
                 break;
         }
-    }
-
-    /**
-     * Keeps player within the bounds of the level.
-     */
-    private void checkBounds() {
-        // left border, right border, bottom border, top border
-        if (player.getX() < 0) { player.setX(0f); }
-        else if (player.getX() > level.mapWidth - player.getWidth()) { player.setX(level.mapWidth - player.getWidth()); }
-        if (player.getY() < 0) { player.setY(0f); }
-        else if (player.getY() > level.mapHeight - player.getHeight()) { player.setY(level.mapHeight - player.getHeight()); }
+        profiler.end(FrameProfiler.FRAME);
+        profiler.endFrame(delta);
     }
 
     /**
      * Moves camera to follow the player in the center while staying within the bounds of the level.
      */
     private void repositionCamera() {
-        camera.position.x = player.getX()+player.getWidth()/2;
-        camera.position.y = player.getY()+player.getHeight()/2;
+        float alpha = loop.getAlpha();
+        camera.position.x = player.getDrawX(alpha)+player.getWidth()/2;
+        camera.position.y = player.getDrawY(alpha)+player.getHeight()/2;
         camera.position.x = MathUtils.clamp(camera.position.x, game.CAM_WIDTH/2, level.mapWidth-game.CAM_WIDTH/2);
         camera.position.y = MathUtils.clamp(camera.position.y, camera.viewportHeight/2, level.mapHeight-camera.viewportHeight/2);
     }
@@ -224,6 +265,9 @@ public class GameScreen implements Screen {
         camera.viewportWidth = game.CAM_WIDTH;
         camera.viewportHeight = game.CAM_WIDTH * height/width;
         camera.update();
+        // the camera can be a whole view away from the player at the level's edges, keep all of it active
+        world.setActiveRadius(Math.max(World.DEFAULT_ACTIVE_RADIUS,
+                Math.max(camera.viewportWidth, camera.viewportHeight)));
         game.renderer.resizeCamera();
         repositionCamera();
         game.stage.getViewport().update(width,height,false);
@@ -271,6 +315,7 @@ public class GameScreen implements Screen {
      */
     public void hide() {
         pause();
+        saveRecording();
         pauseMenu.remove();
         gameUI.remove();
     }
@@ -285,14 +330,14 @@ public class GameScreen implements Screen {
      * Sets player state to frozen.
      */
     public void setFrozen() {
-        playerState = PlayerState.FROZEN;
+        world.setFrozen();
     }
 
     /**
      * Sets player state to moving.
      */
     public void setMoving() {
-        playerState = PlayerState.MOVING;
+        world.setMoving();
     }
 
     /**
@@ -308,7 +353,9 @@ public class GameScreen implements Screen {
      */
     public void setGamePaused() {
         gameState = GameState.PAUSED;
+        input.clear();
         setFrozen();
+        if (recording != null) { recording.pause(); }
     }
 
     /**
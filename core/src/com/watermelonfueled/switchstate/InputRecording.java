@@ -0,0 +1,133 @@
+package com.watermelonfueled.switchstate;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Records a play session of a level as a compact binary log: every touch event with its time and every simulated
+ * frame's time and streaming focus, so {@link Replay} can run the session again bit for bit. Recording is done by
+ * the {@link InputSampler} and {@link GameScreen}.
+ * <p>
+ * Format, little-endian:
+ * <pre>
+ * header   int magic, short version, int level id, float tick length
+ * records  byte type, then
+ *          DOWN, DRAG: float x, float y, float time
+ *          UP:         float time
+ *          FRAME:      float delta, float focus x, float focus y
+ *          PAUSE, RESTART: nothing
+ *          END:        long world checksum, last record
+ * </pre>
+ */
+public class InputRecording {
+    static final int MAGIC = 0x50525353;            // "SSRP"
+    static final short VERSION = 1;
+    static final byte DOWN = 0, DRAG = 1, UP = 2, FRAME = 3, PAUSE = 4, RESTART = 5, END = 6;
+    private static final int INITIAL_CAPACITY = 1024 * 1024;   // about 20 minutes of frames at 60 fps
+
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor for a recording, see {@link #start(int, float)}. The buffer is sized for a long session so
+     * recording frames does not allocate, and is reused by later sessions.
+     */
+    public InputRecording() {
+        buffer = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Starts a new recording, dropping the previous one.
+     * @param levelId the level being played
+     * @param tickLength time (s) simulated per tick
+     */
+    public void start(int levelId, float tickLength) {
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putInt(levelId);
+        buffer.putFloat(tickLength);
+    }
+
+    /**
+     * Records a touch down, see {@link InputSampler#touchDown(float, float, float)}.
+     */
+    public void touchDown(float x, float y, float time) { putTouch(DOWN, x, y, time); }
+
+    /**
+     * Records a drag, see {@link InputSampler#touchDragged(float, float, float)}.
+     */
+    public void touchDragged(float x, float y, float time) { putTouch(DRAG, x, y, time); }
+
+    /**
+     * Records a touch up, see {@link InputSampler#touchUp(float)}.
+     */
+    public void touchUp(float time) {
+        ensureRemaining(5);
+        buffer.put(UP);
+        buffer.putFloat(time);
+    }
+
+    /**
+     * Records a simulated frame.
+     * @param delta time (s) of the frame
+     * @param focusX x coordinate the level was streamed around after the frame
+     * @param focusY y coordinate the level was streamed around after the frame
+     */
+    public void frame(float delta, float focusX, float focusY) {
+        ensureRemaining(13);
+        buffer.put(FRAME);
+        buffer.putFloat(delta);
+        buffer.putFloat(focusX);
+        buffer.putFloat(focusY);
+    }
+
+    /**
+     * Records the game being paused, which drops pending input and freezes the player.
+     */
+    public void pause() {
+        ensureRemaining(1);
+        buffer.put(PAUSE);
+    }
+
+    /**
+     * Records the level being restarted.
+     */
+    public void restart() {
+        ensureRemaining(1);
+        buffer.put(RESTART);
+    }
+
+    /**
+     * Ends the recording.
+     * @param world the world at the end of the session, its checksum is stored so replays can be verified
+     * @return the recording
+     */
+    public byte[] finish(World world) {
+        ensureRemaining(9);
+        buffer.put(END);
+        buffer.putLong(world.checksum());
+        byte[] log = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, log, 0, log.length);
+        return log;
+    }
+
+    private void putTouch(byte type, float x, float y, float time) {
+        ensureRemaining(13);
+        buffer.put(type);
+        buffer.putFloat(x);
+        buffer.putFloat(y);
+        buffer.putFloat(time);
+    }
+
+    /**
+     * Doubles the buffer when a record would not fit, only for sessions longer than the initial capacity.
+     * @param bytes size of the record
+     */
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() >= bytes) { return; }
+        ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+}
@@ -0,0 +1,141 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Coalesces touch events into the latest sample, which the simulation reads once per tick. Touch panels can deliver
+ * several drag events per frame; only the last one matters, so the player's direction is computed once per tick at
+ * most instead of once per event. Does not depend on Gdx application state so input can be fed from a recording.
+ * <p>
+ * Optionally predicts where the touch will be a short time ahead from its recent velocity, to cut the perceived
+ * delay between moving the finger and the player moving.
+ */
+public class InputSampler {
+    public static final float MAX_DISTANCE = 40;    // max distance from touchdown point for max player speed
+    private static final float VELOCITY_SMOOTHING = 0.5f;   // weight of the newest drag in the touch velocity
+
+    private boolean touching;                   // finger is down, as of the latest event
+    private boolean pressed, released;          // a touch started or ended since the last tick
+    private boolean moved;                      // the touch moved since the last tick
+    private float downX, downY;                 // touch down position
+    private float x, y;                         // latest touch position
+    private float velX, velY;                   // touch velocity (px/s), smoothed
+    private float lastTime;                     // time of the latest event (s)
+    private float predictionHorizon;            // how far ahead (s) the touch is predicted, 0 for none
+
+    private float angle, distanceRatio;         // direction and speed last given to the player
+    private InputRecording recording;           // records the events if set
+
+    /**
+     * Records a touch down.
+     * @param x x coordinate (screen)
+     * @param y y coordinate (screen)
+     * @param time time of the event (s)
+     */
+    public void touchDown(float x, float y, float time) {
+        if (recording != null) { recording.touchDown(x, y, time); }
+        downX = this.x = x;
+        downY = this.y = y;
+        velX = velY = 0;
+        lastTime = time;
+        touching = pressed = true;
+        moved = false;
+        angle = distanceRatio = 0;
+    }
+
+    /**
+     * Records a drag, replacing the previous drag if the simulation has not read it yet.
+     * @param x x coordinate (screen)
+     * @param y y coordinate (screen)
+     * @param time time of the event (s)
+     */
+    public void touchDragged(float x, float y, float time) {
+        if (recording != null) { recording.touchDragged(x, y, time); }
+        if (!touching) { return; }
+        float dt = time - lastTime;
+        if (dt > 0) {
+            velX += ((x - this.x) / dt - velX) * VELOCITY_SMOOTHING;
+            velY += ((y - this.y) / dt - velY) * VELOCITY_SMOOTHING;
+        }
+        this.x = x;
+        this.y = y;
+        lastTime = time;
+        moved = true;
+    }
+
+    /**
+     * Records a touch up.
+     * @param time time of the event (s)
+     */
+    public void touchUp(float time) {
+        if (recording != null) { recording.touchUp(time); }
+        if (!touching) { return; }
+        lastTime = time;
+        touching = false;
+        released = true;
+    }
+
+    /**
+     * Applies the input since the last tick to the world: starts the player moving on touch down, points them by the
+     * latest drag and freezes them on touch up. Does nothing if there was no input.
+     * @param world the world
+     */
+    public void apply(World world) {
+        if (pressed) {
+            pressed = false;
+            world.setMoving();
+        }
+        if (moved) {
+            moved = false;
+            float sampleX = x + velX * predictionHorizon, sampleY = y + velY * predictionHorizon;
+            angle = MathUtils.atan2(sampleY - downY, downX - sampleX);
+            float dx = sampleX - downX, dy = sampleY - downY;
+            distanceRatio = MathUtils.clamp((float) Math.sqrt(dx * dx + dy * dy), 0, MAX_DISTANCE) / MAX_DISTANCE;
+            world.player.setDirection(angle, distanceRatio);
+        }
+        if (released) {
+            released = false;
+            if (!touching) {
+                world.setFrozen();
+                world.player.stop();
+            }
+        }
+    }
+
+    /**
+     * Drops input not yet applied, e.g. when the game is paused.
+     */
+    public void clear() {
+        pressed = released = moved = touching = false;
+    }
+
+    /**
+     * Sets the recording the touch events are written to.
+     * @param recording the recording, null to stop recording
+     */
+    public void setRecording(InputRecording recording) { this.recording = recording; }
+
+    /**
+     * Sets how far ahead the touch position is predicted from its velocity.
+     * @param seconds prediction horizon (s), 0 to use the latest touch as is
+     */
+    public void setPredictionHorizon(float seconds) { predictionHorizon = seconds; }
+
+    public boolean isTouching() { return touching; }
+
+    public float getDownX() { return downX; }
+
+    public float getDownY() { return downY; }
+
+    /**
+     * Gets the direction last given to the player.
+     * @return angle (radians)
+     */
+    public float getAngle() { return angle; }
+
+    /**
+     * Gets the speed last given to the player.
+     * @return share of max speed, 0 to 1
+     */
+    public float getDistanceRatio() { return distanceRatio; }
+}
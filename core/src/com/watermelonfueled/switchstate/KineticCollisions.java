@@ -0,0 +1,172 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BinaryHeap;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Finds the exact times the player touches enemies instead of checking for overlaps at the end of each step. Between
+ * input events the player moves in a straight line and an enemy moves in a straight line until its move pattern's
+ * segment ends, so the time their boxes first overlap can be solved for. Each enemy has one pending event in a
+ * priority queue: the time it touches the player, or the time its segment ends and it has to be predicted again.
+ * <p>
+ * Predictions hold until the player changes direction, is stopped by a wall or the set of enemies changes, see
+ * {@link #invalidate()}; then everything is predicted again from the current positions.
+ */
+public class KineticCollisions {
+    private static final float MIN_EVENT_STEP = 1e-5f;     // min time (s) between an enemy's events, so they advance
+    private static final float MIN_EVENT_SHARE = 1e-6f;    // min share of the time between events, still advances
+                                                           // once MIN_EVENT_STEP is lost to float precision
+
+    private BinaryHeap<Event> events;
+    private final Array<Event> freeEvents;  // reused events
+    private int eventCapacity;              // events created, an enemy has at most one pending
+    private boolean planned;                // events match the player's current motion
+    private float baseTime, baseX, baseY;   // where the player was at the time of the last plan
+    private float velX, velY;               // player's change of position per second
+    private float playerWidth, playerHeight;
+    private final Vector2 position, velocity;   // reused for enemy motion
+    private int predictions;                // predictions made since the last advance
+
+    /**
+     * Constructor for an empty scheduler, see {@link #plan(EnemyStore, IntArray, Player, float)}.
+     */
+    public KineticCollisions() {
+        events = new BinaryHeap<Event>();
+        freeEvents = new Array<Event>();
+        position = new Vector2();
+        velocity = new Vector2();
+    }
+
+    /**
+     * Checks if the predictions still hold for the player's motion.
+     * @param player the player
+     * @return false if the player has changed direction or the predictions were invalidated
+     */
+    public boolean isPlanned(Player player) {
+        return planned && velX == -player.getVelX() && velY == -player.getVelY();
+    }
+
+    /**
+     * Drops the predictions, for when the player did not move as predicted or the enemies changed.
+     */
+    public void invalidate() {
+        planned = false;
+    }
+
+    /**
+     * Predicts when each enemy touches the player, dropping earlier predictions. Enemies and player must be at the
+     * given time.
+     * @param enemies the enemies
+     * @param active indices of the enemies to predict
+     * @param player the player, assumed to keep their velocity
+     * @param time current time (s) since the level started
+     */
+    public void plan(EnemyStore enemies, IntArray active, Player player, float time) {
+        while (events.size > 0) { freeEvents.add(events.pop()); }
+        if (eventCapacity < enemies.x.length) {
+            // created up front for every enemy, so predicting never allocates
+            eventCapacity = enemies.x.length;
+            events = new BinaryHeap<Event>(eventCapacity, false);
+            while (freeEvents.size < eventCapacity) { freeEvents.add(new Event()); }
+        }
+        baseTime = time;
+        baseX = player.getX();
+        baseY = player.getY();
+        velX = -player.getVelX();  // the player moves against their velocity
+        velY = -player.getVelY();
+        playerWidth = player.getWidth();
+        playerHeight = player.getHeight();
+        for (int j = 0; j < active.size; j++) {
+            int i = active.items[j];
+            if (enemies.pattern[i] != EnemyStore.NO_PATTERN) { predict(enemies, i, enemies.moveTime[i], time); }
+        }
+        planned = true;
+    }
+
+    /**
+     * Handles the events up to a time in order: enemies touching the player are stopped where they touched, enemies
+     * ending a segment are predicted again. Enemies and player must have been moved to the time.
+     * @param enemies the enemies
+     * @param time current time (s) since the level started
+     * @param stopped the enemies stopped are added to it
+     * @return number of predictions made since the last advance, including planning
+     */
+    public int advance(EnemyStore enemies, float time, IntArray stopped) {
+        while (events.size > 0 && events.peek().getValue() <= time) {
+            Event event = events.pop();
+            freeEvents.add(event);
+            int i = event.enemy;
+            if (enemies.pattern[i] == EnemyStore.NO_PATTERN) { continue; }
+            float at = event.getValue();
+            float moveTime = enemies.moveTime[i] - (time - at);    // enemy's move time at the event
+            if (event.contact) {
+                enemies.stopAt(i, moveTime);
+                stopped.add(i);
+            } else {
+                predict(enemies, i, moveTime, at);
+            }
+        }
+        int count = predictions;
+        predictions = 0;
+        return count;
+    }
+
+    /**
+     * Predicts when an enemy touches the player during its current segment, and queues the contact or, if there is
+     * none, the end of the segment.
+     * @param enemies the enemies
+     * @param i index of the enemy
+     * @param moveTime enemy's move time at the given time
+     * @param time time (s) since the level started to predict from
+     */
+    private void predict(EnemyStore enemies, int i, float moveTime, float time) {
+        predictions++;
+        MovePattern pattern = enemies.patterns[enemies.pattern[i]];
+        float remaining = pattern.getMotion(moveTime, position, velocity);
+        // separation of the enemy from the player and how it changes
+        float dx = enemies.startX[i] + position.x - (baseX + velX * (time - baseTime));
+        float dy = enemies.startY[i] + position.y - (baseY + velY * (time - baseTime));
+        float vx = velocity.x - velX, vy = velocity.y - velY;
+        // boxes overlap while the separation is within [-enemy size, player size] on both axes
+        float enter = 0, exit = remaining;
+        if (vx == 0) {
+            if (dx < -enemies.width[i] || dx > playerWidth) { exit = -1; }
+        } else {
+            float t1 = (-enemies.width[i] - dx) / vx, t2 = (playerWidth - dx) / vx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (vy == 0) {
+            if (dy < -enemies.height[i] || dy > playerHeight) { exit = -1; }
+        } else {
+            float t1 = (-enemies.height[i] - dy) / vy, t2 = (playerHeight - dy) / vy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (enter <= exit) {
+            queue(i, time + enter, true);
+        } else if (remaining != Float.POSITIVE_INFINITY) {
+            queue(i, time + Math.max(remaining, Math.max(MIN_EVENT_STEP, time * MIN_EVENT_SHARE)), false);
+        }
+        // a pattern that has completed and does not touch the player never will, until the player changes direction
+    }
+
+    private void queue(int enemy, float time, boolean contact) {
+        Event event = freeEvents.pop();
+        event.enemy = enemy;
+        event.contact = contact;
+        events.add(event, time);
+    }
+
+    /**
+     * An enemy touching the player or ending a segment, queued by its time.
+     */
+    private static class Event extends BinaryHeap.Node {
+        int enemy;
+        boolean contact;    // touches the player, otherwise ends a segment
+
+        Event() { super(0); }
+    }
+}
@@ -0,0 +1,87 @@
+package com.watermelonfueled.switchstate;
+
+/**
+ * Histogram of durations with fixed buckets, so recording never allocates. Buckets grow by a quarter octave from 1
+ * microsecond, which keeps percentiles within about 19% of the true value up to about 55 ms; longer durations all
+ * land in the last bucket, the exact max is kept separately.
+ */
+public class LatencyHistogram {
+    private static final int BUCKET_COUNT = 64;
+    private static final long[] BUCKET_BOUNDS = new long[BUCKET_COUNT];    // upper bound of each bucket (ns)
+    static {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            BUCKET_BOUNDS[i] = (long) (1000 * Math.pow(2, i / 4.0));
+        }
+    }
+
+    private final int[] counts;
+    private int count;
+    private long max, total;
+
+    /**
+     * Constructor for an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new int[BUCKET_COUNT];
+    }
+
+    /**
+     * Records a duration.
+     * @param nanos duration (ns)
+     */
+    public void record(long nanos) {
+        // first bucket whose bound is not below the duration
+        int low = 0, high = BUCKET_COUNT - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BUCKET_BOUNDS[mid] < nanos) { low = mid + 1; } else { high = mid; }
+        }
+        counts[low]++;
+        count++;
+        total += nanos;
+        if (nanos > max) { max = nanos; }
+    }
+
+    /**
+     * Gets the duration a share of the recorded durations are at or below, rounded up to its bucket's bound.
+     * @param percentile share of durations, from 0 to 1
+     * @return duration (ns), 0 if nothing was recorded
+     */
+    public long getPercentile(float percentile) {
+        if (count == 0) { return 0; }
+        int rank = Math.max(1, (int) Math.ceil(percentile * count));
+        int seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) { return Math.min(BUCKET_BOUNDS[i], max); }
+        }
+        return max;
+    }
+
+    /**
+     * Gets the longest recorded duration.
+     * @return duration (ns)
+     */
+    public long getMax() { return max; }
+
+    /**
+     * Gets the mean of the recorded durations.
+     * @return duration (ns), 0 if nothing was recorded
+     */
+    public long getMean() { return count == 0 ? 0 : total / count; }
+
+    /**
+     * Gets the number of recorded durations.
+     * @return count
+     */
+    public int getCount() { return count; }
+
+    /**
+     * Removes all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) { counts[i] = 0; }
+        count = 0;
+        max = total = 0;
+    }
+}
@@ -1,71 +1,166 @@
 package com.watermelonfueled.switchstate;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.utils.Json;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 /**
  * Sets up and loads a specific level of the game.
  */
 public class Level {
     private final String TAG = "LEVEL";
+    private static final float DEFINITION_PROGRESS = 0.5f;  // load progress once the level's file is read
+    static final int PROGRESS_INTERVAL = 256;               // enemies created between load progress updates
 
     public int mapWidth, mapHeight;
-    public Enemy[] enemies;
+    public float playerStartX, playerStartY;
+    public volatile float loadProgress;     // 0 to 1, may be read from another thread while loading
+    public EnemyStore enemies;
     public GameRectangle[] walls;
+    public int wallCount;                   // walls in use, the array may be longer when streaming
+    public WallGrid wallGrid;
+    public int wallsVersion;                // changes whenever walls are replaced by streaming
+    public PathGrid pathGrid;               // index of the enemies' paths
+    public TrajectoryIndex trajectories;    // index of where the enemies are over time
+    public int enemiesVersion;              // changes whenever enemies are replaced, by streaming or a reset
+    private LevelDefinition definition;     // parsed level the game objects are built from
+    private LevelStreamer streamer;         // streams enemies and walls by chunk, null if the whole level is loaded
     private EnemyFactory enemyFactory;
+    private boolean building;               // true while built from a definition, see setBuildProgress
 
 
     /**
      * Constructor for Level
      */
     public Level() {
-        enemyFactory = EnemyFactory.instantiate();
+        this(EnemyFactory.instantiate());
     }
 
     /**
-     * Loads the level, creating game objects and setting up the levels properties
+     * Constructor for Level using an already loaded enemy factory.
+     * @param enemyFactory factory creating the level's enemies
+     */
+    public Level(EnemyFactory enemyFactory) {
+        this.enemyFactory = enemyFactory;
+    }
+
+    /**
+     * Loads the level, creating game objects and setting up the levels properties. The compiled levelN.bin is used
+     * if there is one, otherwise levelN.json.
+     * Only touches files, not graphics, so it can run on a background thread.
      * @param id the level to load
-     * @param player the player object, for setting start position
      */
-    public void loadLevel(int id, Player player){
+    public void loadLevel(int id){
         Gdx.app.log(TAG, "Loading level: " + id);
-        // load data from appropriate level file
-        Json json = new Json();
-        Gdx.app.debug(TAG, "Opening level"+id+".json");
-        LevelData data = json.fromJson(LevelData.class, Gdx.files.internal("level"+id+".json"));
-
-        enemies = new Enemy[data.enemyData.length];
-        walls = new GameRectangle[data.wallData.length];
-        ArrayList<MovePattern> movePatterns = new ArrayList<MovePattern>(data.movePatternData.length);
-
-        Gdx.app.debug(TAG, "Creating move patterns");
-        for (MovePatternData moveData : data.movePatternData){
-            movePatterns.add(new MovePattern(moveData.duration, moveData.loopMode, moveData.pointsX, moveData.pointsY));
-        }
+        loadProgress = 0f;
+        build(LevelDefinition.load(id));
+        Gdx.app.log(TAG, "Loading level complete.");
+    }
 
-        Gdx.app.debug(TAG, "Creating enemies");
-        Enemy enemy;
-        for (int i = 0; i < data.enemyData.length; i++) {
-            enemy = enemyFactory.createEnemy(data.enemyData[i].id);
-            enemy.setStartPoint(data.enemyData[i].startX,data.enemyData[i].startY);
-            enemy.setPattern(movePatterns.get(data.enemyData[i].movePatternId));
-            enemies[i] = enemy;
-        }
+    /**
+     * Loads the level like {@link #loadLevel(int)}, reusing the level's definition if it is cached so the level's
+     * file is only read and parsed the first time.
+     * @param id the level to load
+     * @param cache cache of parsed levels
+     */
+    public void loadLevel(int id, LevelCache cache){
+        Gdx.app.log(TAG, "Loading level: " + id);
+        loadProgress = 0f;
+        build(cache.get(id));
+        Gdx.app.log(TAG, "Loading level complete.");
+    }
 
-        Gdx.app.debug(TAG, "Creating walls");
-        for (int i = 0; i < data.wallData.length; i++) {
-            walls[i] = new GameRectangle(data.wallData[i].startX,data.wallData[i].startY,data.wallData[i].width,data.wallData[i].height);
+    /**
+     * Creates the level's game objects from its data and sets up the level's properties. Does not use Gdx, so
+     * levels can also be built headless.
+     * @param data the level data
+     */
+    public void build(LevelData data){
+        loadProgress = 0f;
+        build(new LevelDefinition(data));
+    }
+
+    /**
+     * Sets up the level from a compiled level, see {@link LevelCompiler}, reading it in a single pass. Enemies and
+     * walls are streamed in by chunk around the player's start, see {@link #stream(float, float, float)}.
+     * @param buffer the compiled level
+     */
+    public void build(ByteBuffer buffer){
+        loadProgress = 0f;
+        build(new LevelDefinition(buffer));
+    }
+
+    /**
+     * Sets up the level from a parsed level definition. Only the game objects that change during play are created,
+     * everything else is shared with the definition.
+     * @param definition the level definition
+     */
+    public void build(LevelDefinition definition){
+        this.definition = definition;
+        mapWidth = definition.mapWidth;
+        mapHeight = definition.mapHeight;
+        playerStartX = definition.playerStartX;
+        playerStartY = definition.playerStartY;
+        loadProgress = DEFINITION_PROGRESS;
+        building = true;
+        reset();
+        building = false;
+        loadProgress = 1f;
+    }
+
+    /**
+     * Puts the level back in its starting state, recreating its enemies from the definition, to restart it without
+     * loading it again.
+     */
+    public void reset(){
+        if (pathGrid == null) { pathGrid = new PathGrid(PathGrid.DEFAULT_CELL_SIZE); }
+        if (trajectories == null) { trajectories = new TrajectoryIndex(TrajectoryIndex.DEFAULT_CELL_SIZE); }
+        if (definition.isStreamed()) {
+            enemies = new EnemyStore(0, definition.movePatterns);
+            streamer = new LevelStreamer(this, enemyFactory, definition);
+            stream(playerStartX, playerStartY, 0f);
+            return;
         }
+        streamer = null;
+        int enemyCount = definition.enemyIds.length;
+        enemies = new EnemyStore(enemyCount, definition.movePatterns);
+        for (int i = 0; i < enemyCount; i++) {
+            enemyFactory.createEnemy(enemies, definition.enemyIds[i], definition.enemyX[i], definition.enemyY[i],
+                    definition.enemyPatterns[i]);
+            if (i % PROGRESS_INTERVAL == 0) { setBuildProgress(i, enemyCount); }
+        }
+        enemies.sortByAnimation(null);
+        pathGrid.rebuild(enemies, 0, 0, mapWidth, mapHeight);
+        trajectories.rebuild(enemies, 0, 0, mapWidth, mapHeight);
+        enemiesVersion++;
+        walls = definition.walls;
+        wallCount = walls.length;
+        wallGrid = definition.wallGrid;
+        wallsVersion++;
+    }
 
-        Gdx.app.debug(TAG, "Set player");
-        player.setPosition(data.playerX, data.playerY);
+    /**
+     * Reports the load progress of creating the game objects, which follows reading the level's file. Only while the
+     * level is being built, resets and streaming during play do not change the progress.
+     * @param created game objects created so far
+     * @param total game objects to create
+     */
+    void setBuildProgress(int created, int total) {
+        if (building) { loadProgress = DEFINITION_PROGRESS + (1f - DEFINITION_PROGRESS) * created / total; }
+    }
 
-        Gdx.app.debug(TAG, "Set map");
-        mapWidth = data.mapW;
-        mapHeight = data.mapH;
-        Gdx.app.log(TAG, "Loading level complete.");
+    /**
+     * Loads the chunks of a streamed level around the focus point and drops the ones out of range. Does nothing for
+     * levels that are not streamed.
+     * @param x focus x coordinate, usually the camera's
+     * @param y focus y coordinate, usually the camera's
+     * @param time time since the level started
+     */
+    public void stream(float x, float y, float time){
+        if (streamer != null && streamer.update(x, y, time)) {
+            wallsVersion++;
+            enemiesVersion++;
+        }
     }
 
 }
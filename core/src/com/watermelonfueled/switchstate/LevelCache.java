@@ -0,0 +1,57 @@
+package com.watermelonfueled.switchstate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used {@link LevelDefinition}s in memory so reloading or restarting a level does not read
+ * and parse its file again. Once more than the capacity are held the least recently used one is dropped.
+ * Safe to use from the loading thread and the render thread.
+ */
+public class LevelCache {
+    public static final int DEFAULT_CAPACITY = 4;   // level definitions kept
+
+    private final LinkedHashMap<Integer, LevelDefinition> definitions;
+
+    /**
+     * Constructor for a cache with the default capacity.
+     */
+    public LevelCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for the cache.
+     * @param capacity max number of level definitions kept
+     */
+    public LevelCache(final int capacity) {
+        // access order, least recently used first
+        definitions = new LinkedHashMap<Integer, LevelDefinition>(capacity + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, LevelDefinition> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets a level's definition, loading it if it is not cached.
+     * @param id the level
+     * @return the level definition
+     */
+    public synchronized LevelDefinition get(int id) {
+        LevelDefinition definition = definitions.get(id);
+        if (definition == null) {
+            definition = LevelDefinition.load(id);
+            definitions.put(id, definition);
+        }
+        return definition;
+    }
+
+    /**
+     * Drops all cached definitions.
+     */
+    public synchronized void clear() {
+        definitions.clear();
+    }
+}
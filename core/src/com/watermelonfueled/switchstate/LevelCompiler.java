@@ -0,0 +1,210 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Json;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * Compiles levelN.json files into the compact binary level format read by {@link LevelDefinition#LevelDefinition(ByteBuffer)}.
+ * Coordinates are quantized to 16 bit integers and move pattern points are stored expanded for their loop mode along
+ * with their segment times, so loading is a single pass with no parsing. Enemies and walls are grouped by the square
+ * chunk of the map they are in so {@link LevelStreamer} can load chunks individually; walls crossing chunk borders are
+ * split. Build tool only, excluded from the GWT build.
+ * <p>
+ * Format, little-endian:
+ * <pre>
+ * header   int magic, short version, float quantization step, int mapW, int mapH, float playerX, float playerY,
+ *          int pattern count, int enemy count, int wall count, float chunk size, int chunk cols, int chunk rows
+ * pattern  float duration, byte loop mode, short buckets, short point count,
+ *          point count * (short x, short y), (point count - 1) * (float segment start, float segment duration)
+ * chunks   chunk cols * chunk rows * (int enemy count, int wall count), row by row
+ * enemy    short prototype id, short move pattern id, short start x, short start y, grouped by chunk
+ * wall     short x, short y, short width, short height, grouped by chunk
+ * </pre>
+ */
+public class LevelCompiler {
+    private static final float MIN_QUANTIZATION_STEP = 1f / 16f;    // finest precision of coordinates
+
+    private LevelCompiler() {}
+
+    /**
+     * Compiles each level json file given to a .bin file next to it.
+     * @param args paths of the level json files
+     */
+    public static void main(String[] args) {
+        for (String path : args) {
+            FileHandle json = new FileHandle(path);
+            compile(json, json.sibling(json.nameWithoutExtension() + ".bin"));
+        }
+    }
+
+    /**
+     * Compiles a level json file.
+     * @param json the level json file
+     * @param out the file to write the compiled level to
+     */
+    public static void compile(FileHandle json, FileHandle out) {
+        out.writeBytes(compile(new Json().fromJson(LevelData.class, json)), false);
+    }
+
+    /**
+     * Compiles level data into the binary level format.
+     * @param data the level data
+     * @return the compiled level
+     */
+    public static byte[] compile(LevelData data) {
+        float chunkSize = LevelStreamer.DEFAULT_CHUNK_SIZE;
+        int chunkCols = Math.max(1, (int) Math.ceil(data.mapW / chunkSize));
+        int chunkRows = Math.max(1, (int) Math.ceil(data.mapH / chunkSize));
+        ArrayList<ArrayList<EnemyData>> chunkEnemies = new ArrayList<ArrayList<EnemyData>>();
+        ArrayList<ArrayList<WallData>> chunkWalls = new ArrayList<ArrayList<WallData>>();
+        for (int i = 0; i < chunkCols * chunkRows; i++) {
+            chunkEnemies.add(new ArrayList<EnemyData>());
+            chunkWalls.add(new ArrayList<WallData>());
+        }
+        for (EnemyData enemy : data.enemyData) {
+            int col = clamp((int) Math.floor(enemy.startX / chunkSize), chunkCols);
+            int row = clamp((int) Math.floor(enemy.startY / chunkSize), chunkRows);
+            chunkEnemies.get(row * chunkCols + col).add(enemy);
+        }
+        int wallCount = 0;
+        for (WallData wall : data.wallData) {
+            wallCount += splitWall(wall, chunkSize, chunkCols, chunkRows, chunkWalls);
+        }
+
+        MovePattern[] patterns = new MovePattern[data.movePatternData.length];
+        int size = 50 + chunkCols * chunkRows * 8 + data.enemyData.length * 8 + wallCount * 8;
+        float extent = Math.max(data.mapW, data.mapH);
+        for (int i = 0; i < patterns.length; i++) {
+            MovePatternData moveData = data.movePatternData[i];
+            patterns[i] = PatternResampler.create(moveData, 0);   // curves are stored resampled
+            int pointCount = patterns[i].getPoints().length;
+            size += 9 + pointCount * 4 + (pointCount - 1) * 8;
+            for (Vector2 point : patterns[i].getPoints()) {
+                extent = Math.max(extent, Math.max(Math.abs(point.x), Math.abs(point.y)));
+            }
+        }
+        // finest power of two step that still fits the level's coordinates in a short, chunk borders stay exact
+        float step = MIN_QUANTIZATION_STEP;
+        while (extent / step > Short.MAX_VALUE) { step *= 2; }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(LevelDefinition.BINARY_MAGIC);
+        buffer.putShort(LevelDefinition.BINARY_VERSION);
+        buffer.putFloat(step);
+        buffer.putInt(data.mapW);
+        buffer.putInt(data.mapH);
+        buffer.putFloat(data.playerX);
+        buffer.putFloat(data.playerY);
+        buffer.putInt(patterns.length);
+        buffer.putInt(data.enemyData.length);
+        buffer.putInt(wallCount);
+        buffer.putFloat(chunkSize);
+        buffer.putInt(chunkCols);
+        buffer.putInt(chunkRows);
+
+        for (int i = 0; i < patterns.length; i++) {
+            MovePatternData moveData = data.movePatternData[i];
+            Vector2[] points = patterns[i].getPoints();
+            buffer.putFloat(moveData.duration);
+            buffer.put((byte) moveData.loopMode);
+            // buckets of the pattern as stored, resampled ones have more segments, capped to fit the short
+            int buckets = PatternResampler.bucketCount(moveData, moveData.buckets);
+            buffer.putShort((short) Math.min(buckets, Short.MAX_VALUE));
+            buffer.putShort((short) points.length);
+            for (Vector2 point : points) {
+                buffer.putShort(quantize(point.x, step));
+                buffer.putShort(quantize(point.y, step));
+            }
+            float[] startTimes = patterns[i].getSegmentStartTimes(), durations = patterns[i].getSegmentDurations();
+            for (int s = 0; s < startTimes.length; s++) {
+                buffer.putFloat(startTimes[s]);
+                buffer.putFloat(durations[s]);
+            }
+        }
+
+        for (int i = 0; i < chunkEnemies.size(); i++) {
+            buffer.putInt(chunkEnemies.get(i).size());
+            buffer.putInt(chunkWalls.get(i).size());
+        }
+
+        for (ArrayList<EnemyData> enemies : chunkEnemies) {
+            for (EnemyData enemy : enemies) {
+                buffer.putShort((short) enemy.id);
+                buffer.putShort((short) enemy.movePatternId);
+                buffer.putShort(quantize(enemy.startX, step));
+                buffer.putShort(quantize(enemy.startY, step));
+            }
+        }
+
+        for (ArrayList<WallData> walls : chunkWalls) {
+            for (WallData wall : walls) {
+                buffer.putShort(quantize(wall.startX, step));
+                buffer.putShort(quantize(wall.startY, step));
+                buffer.putShort(quantize(wall.width, step));
+                buffer.putShort(quantize(wall.height, step));
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Splits a wall at chunk borders, adding each piece to the chunk it is in.
+     * @param wall the wall
+     * @param chunkSize size of the chunks
+     * @param chunkCols number of chunk columns
+     * @param chunkRows number of chunk rows
+     * @param chunkWalls walls of each chunk
+     * @return number of pieces the wall was split into
+     */
+    private static int splitWall(WallData wall, float chunkSize, int chunkCols, int chunkRows,
+                                 ArrayList<ArrayList<WallData>> chunkWalls) {
+        int minCol = clamp((int) Math.floor(wall.startX / chunkSize), chunkCols);
+        int maxCol = clamp((int) Math.floor((wall.startX + wall.width) / chunkSize), chunkCols);
+        int minRow = clamp((int) Math.floor(wall.startY / chunkSize), chunkRows);
+        int maxRow = clamp((int) Math.floor((wall.startY + wall.height) / chunkSize), chunkRows);
+        int pieces = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                WallData piece = new WallData();
+                // border chunks keep whatever part of the wall lies outside the map
+                float left = col == minCol ? wall.startX : col * chunkSize;
+                float right = col == maxCol ? wall.startX + wall.width : (col + 1) * chunkSize;
+                float bottom = row == minRow ? wall.startY : row * chunkSize;
+                float top = row == maxRow ? wall.startY + wall.height : (row + 1) * chunkSize;
+                if (right <= left || top <= bottom) { continue; }   // wall ends exactly on the border
+                piece.startX = left;
+                piece.startY = bottom;
+                piece.width = right - left;
+                piece.height = top - bottom;
+                chunkWalls.get(row * chunkCols + col).add(piece);
+                pieces++;
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Clamps a chunk coordinate to the chunks of the map.
+     * @param value chunk column or row
+     * @param count number of chunk columns or rows
+     * @return clamped chunk coordinate
+     */
+    private static int clamp(int value, int count) {
+        return value < 0 ? 0 : (value >= count ? count - 1 : value);
+    }
+
+    /**
+     * Quantizes a coordinate to the nearest multiple of the step.
+     * @param value the coordinate
+     * @param step quantization step
+     * @return the quantized coordinate
+     */
+    private static short quantize(float value, float step) {
+        return (short) Math.round(value / step);
+    }
+}
@@ -0,0 +1,172 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Json;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The parsed, read-only definition of a level: its move patterns, walls and enemy spawns. A {@link Level} is built
+ * from a definition, creating only the state that changes during play, so the same definition can be reused to
+ * restart or reload the level without parsing it again. See {@link LevelCache}.
+ * <p>
+ * Levels loaded from json keep their walls and enemy spawns here. Compiled levels keep the compiled data instead and
+ * are streamed by chunk, see {@link LevelStreamer}.
+ */
+public class LevelDefinition {
+    private static final String TAG = "LEVEL DEFINITION";
+    static final int BINARY_MAGIC = 0x564C5353;     // "SSLV", compiled level files. See LevelCompiler
+    static final short BINARY_VERSION = 2;
+
+    public final int mapWidth, mapHeight;
+    public final float playerStartX, playerStartY;
+    final MovePattern[] movePatterns;               // shared by all levels built from this definition
+
+    // whole levels, null for compiled levels
+    final GameRectangle[] walls;
+    final WallGrid wallGrid;
+    final int[] enemyIds, enemyPatterns;
+    final float[] enemyX, enemyY;
+
+    // compiled levels, null for whole levels
+    final ByteBuffer compiled;                      // little-endian, only read with absolute gets
+    final float step, chunkSize;                    // coordinate quantization step, size of the chunks
+    final int chunkCols, chunkRows;
+    final int[] chunkEnemyStart, chunkWallStart;    // first record of each chunk, chunkCols*chunkRows+1 long
+    final int enemyBase, wallBase;                  // positions of the first enemy and wall records
+
+    /**
+     * Loads a level's definition. The compiled levelN.bin is used if there is one, otherwise levelN.json.
+     * Only touches files, not graphics, so it can run on a background thread.
+     * @param id the level to load
+     * @return the level definition
+     */
+    public static LevelDefinition load(int id) {
+        FileHandle compiled = Gdx.files.internal("level"+id+".bin");
+        if (compiled.exists()) {
+            Gdx.app.debug(TAG, "Opening level"+id+".bin");
+            return new LevelDefinition(ByteBuffer.wrap(compiled.readBytes()));
+        }
+        Gdx.app.debug(TAG, "Opening level"+id+".json");
+        return new LevelDefinition(new Json().fromJson(LevelData.class, Gdx.files.internal("level"+id+".json")));
+    }
+
+    /**
+     * Loads a level's definition from a directory, the same way as {@link #load(int)}. Does not use Gdx, so tools can
+     * load levels headless.
+     * @param dir directory holding the level files, e.g. the assets
+     * @param id the level to load
+     * @return the level definition
+     */
+    public static LevelDefinition load(FileHandle dir, int id) {
+        FileHandle compiled = dir.child("level"+id+".bin");
+        if (compiled.exists()) {
+            return new LevelDefinition(ByteBuffer.wrap(compiled.readBytes()));
+        }
+        return new LevelDefinition(new Json().fromJson(LevelData.class, dir.child("level"+id+".json")));
+    }
+
+    /**
+     * Constructor for a definition from level data. Does not use Gdx, so levels can also be built headless.
+     * @param data the level data
+     */
+    public LevelDefinition(LevelData data) {
+        mapWidth = data.mapW;
+        mapHeight = data.mapH;
+        playerStartX = data.playerX;
+        playerStartY = data.playerY;
+
+        movePatterns = new MovePattern[data.movePatternData.length];
+        for (int i = 0; i < movePatterns.length; i++) {
+            MovePatternData moveData = data.movePatternData[i];
+            movePatterns[i] = PatternResampler.create(moveData, moveData.buckets);
+        }
+
+        int enemyCount = data.enemyData.length;
+        enemyIds = new int[enemyCount];
+        enemyPatterns = new int[enemyCount];
+        enemyX = new float[enemyCount];
+        enemyY = new float[enemyCount];
+        for (int i = 0; i < enemyCount; i++) {
+            enemyIds[i] = data.enemyData[i].id;
+            enemyPatterns[i] = data.enemyData[i].movePatternId;
+            enemyX[i] = data.enemyData[i].startX;
+            enemyY[i] = data.enemyData[i].startY;
+        }
+
+        walls = new GameRectangle[data.wallData.length];
+        for (int i = 0; i < data.wallData.length; i++) {
+            walls[i] = new GameRectangle(data.wallData[i].startX,data.wallData[i].startY,data.wallData[i].width,data.wallData[i].height);
+        }
+        wallGrid = new WallGrid(walls, data.mapW, data.mapH, WallGrid.DEFAULT_CELL_SIZE);
+
+        compiled = null;
+        step = chunkSize = 0;
+        chunkCols = chunkRows = enemyBase = wallBase = 0;
+        chunkEnemyStart = chunkWallStart = null;
+    }
+
+    /**
+     * Constructor for a definition from a compiled level, see {@link LevelCompiler}, reading it in a single pass.
+     * Enemies and walls are left in the compiled data to be streamed in by chunk.
+     * @param buffer the compiled level
+     */
+    public LevelDefinition(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != BINARY_MAGIC || buffer.getShort() != BINARY_VERSION) {
+            throw new GdxRuntimeException("Not a compiled level or compiled with a different version");
+        }
+        step = buffer.getFloat();
+        mapWidth = buffer.getInt();
+        mapHeight = buffer.getInt();
+        playerStartX = buffer.getFloat();
+        playerStartY = buffer.getFloat();
+        movePatterns = new MovePattern[buffer.getInt()];
+        int enemyCount = buffer.getInt();
+        buffer.getInt();    // wall count, walls are only read by chunk
+        chunkSize = buffer.getFloat();
+        chunkCols = buffer.getInt();
+        chunkRows = buffer.getInt();
+
+        for (int i = 0; i < movePatterns.length; i++) {
+            float duration = buffer.getFloat();
+            int loopMode = buffer.get();
+            int buckets = buffer.getShort();
+            float[] points = new float[buffer.getShort() * 2];
+            for (int p = 0; p < points.length; p++) {
+                points[p] = buffer.getShort() * step;
+            }
+            float[] segmentStartTimes = new float[points.length / 2 - 1];
+            float[] segmentDurations = new float[segmentStartTimes.length];
+            for (int s = 0; s < segmentStartTimes.length; s++) {
+                segmentStartTimes[s] = buffer.getFloat();
+                segmentDurations[s] = buffer.getFloat();
+            }
+            movePatterns[i] = new MovePattern(duration, loopMode, points, segmentStartTimes, segmentDurations, buckets);
+        }
+
+        chunkEnemyStart = new int[chunkCols * chunkRows + 1];
+        chunkWallStart = new int[chunkCols * chunkRows + 1];
+        for (int i = 0; i < chunkCols * chunkRows; i++) {
+            chunkEnemyStart[i + 1] = chunkEnemyStart[i] + buffer.getInt();
+            chunkWallStart[i + 1] = chunkWallStart[i] + buffer.getInt();
+        }
+        enemyBase = buffer.position();
+        wallBase = enemyBase + enemyCount * LevelStreamer.ENEMY_RECORD_SIZE;
+        compiled = buffer;
+
+        walls = null;
+        wallGrid = null;
+        enemyIds = enemyPatterns = null;
+        enemyX = enemyY = null;
+    }
+
+    /**
+     * Checks if the level is streamed by chunk.
+     * @return true for compiled levels
+     */
+    public boolean isStreamed() { return compiled != null; }
+}
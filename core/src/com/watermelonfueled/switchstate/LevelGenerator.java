@@ -0,0 +1,66 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Generates synthetic {@link LevelData} for benchmarking and soak testing the simulation. Generation is seeded, so
+ * the same arguments always give the same level. The map grows with the object count to keep density constant.
+ */
+public class LevelGenerator {
+    private static final float AREA_PER_OBJECT = 256f;  // map area (units^2) per enemy or wall
+    private static final int MIN_MAP_SIZE = 64;
+    private static final int PATTERN_POINTS = 4;
+    private static final float PATTERN_RADIUS = 8f;     // max distance of pattern points from the start point
+
+    private LevelGenerator() {}
+
+    /**
+     * Generates a square level with randomly placed enemies and walls.
+     * @param seed random seed
+     * @param enemyCount number of enemies
+     * @param wallCount number of walls
+     * @param patternCount number of move patterns shared by the enemies, at least 1
+     * @return the generated level data
+     */
+    public static LevelData generate(long seed, int enemyCount, int wallCount, int patternCount) {
+        RandomXS128 random = new RandomXS128(seed);
+        LevelData data = new LevelData();
+        int mapSize = Math.max(MIN_MAP_SIZE, (int) Math.sqrt((enemyCount + wallCount) * AREA_PER_OBJECT));
+        data.mapW = data.mapH = mapSize;
+        data.playerX = data.playerY = mapSize / 2f;
+
+        data.movePatternData = new MovePatternData[Math.max(1, patternCount)];
+        for (int i = 0; i < data.movePatternData.length; i++) {
+            MovePatternData pattern = new MovePatternData();
+            pattern.duration = 2f + random.nextFloat() * 8f;
+            pattern.loopMode = i % 3 + 1;   // once, circular, pingpong
+            pattern.pointsX = new float[PATTERN_POINTS];
+            pattern.pointsY = new float[PATTERN_POINTS];
+            for (int p = 1; p < PATTERN_POINTS; p++) {
+                pattern.pointsX[p] = (random.nextFloat() * 2 - 1) * PATTERN_RADIUS;
+                pattern.pointsY[p] = (random.nextFloat() * 2 - 1) * PATTERN_RADIUS;
+            }
+            data.movePatternData[i] = pattern;
+        }
+
+        data.enemyData = new EnemyData[enemyCount];
+        for (int i = 0; i < enemyCount; i++) {
+            EnemyData enemy = new EnemyData();
+            enemy.startX = random.nextFloat() * mapSize;
+            enemy.startY = random.nextFloat() * mapSize;
+            enemy.movePatternId = random.nextInt(data.movePatternData.length);
+            data.enemyData[i] = enemy;
+        }
+
+        data.wallData = new WallData[wallCount];
+        for (int i = 0; i < wallCount; i++) {
+            WallData wall = new WallData();
+            wall.width = 1f + random.nextFloat() * 4f;
+            wall.height = 1f + random.nextFloat() * 4f;
+            wall.startX = random.nextFloat() * (mapSize - wall.width);
+            wall.startY = random.nextFloat() * (mapSize - wall.height);
+            data.wallData[i] = wall;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,283 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.MathUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streams the enemies and walls of a compiled level (see {@link LevelCompiler}) in square chunks. Only the chunks
+ * around a focus point, usually the camera, are turned into game objects in the {@link Level}; chunks that fall out of
+ * range are dropped. The level's game objects are therefore bounded by the active area, not by the map size. The
+ * compact compiled data stays in memory to reactivate chunks from.
+ * <p>
+ * Enemies are stored in the chunk of their start point but their paths reach beyond it, so enemies are loaded from
+ * the active chunks padded by the farthest any enemy's box gets from its start chunk. An enemy is then already loaded
+ * when its path crosses into the active chunks, instead of appearing when its start chunk becomes active.
+ * <p>
+ * When the active chunks change only the enemies of chunks newly in range are loaded, and only those of chunks out of
+ * range are dropped, the rest keep their state. Enemies move in step with the level's time, so reactivated enemies
+ * are fast-forwarded to it. Enemies stopped by the player are remembered by the move time they stopped at, in one
+ * float per enemy record of the compiled level, so the memory is bounded by the level's size however long it is
+ * played.
+ */
+public class LevelStreamer {
+    public static final float DEFAULT_CHUNK_SIZE = 64f;     // world units per chunk side
+    public static final int DEFAULT_ACTIVE_RADIUS = 1;      // chunks active around the focus chunk in each direction
+    static final int ENEMY_RECORD_SIZE = 8, WALL_RECORD_SIZE = 8;
+    private static final float NOT_STOPPED = -1f;           // in stoppedTimes, move times are never negative
+
+    private final Level level;
+    private final EnemyFactory enemyFactory;
+    private final ByteBuffer buffer;                // the compiled level, little-endian, shared with the definition
+    private final float step;                       // coordinate quantization step
+    private final float chunkSize;
+    private final int cols, rows;
+    private final int[] chunkEnemyStart, chunkWallStart;    // first record of each chunk, cols*rows+1 long
+    private final int enemyBase, wallBase;          // buffer positions of the first enemy and wall records
+    private int activeRadius;
+    private final int enemyPadding;                 // chunks around the active chunks enemies are loaded from
+    private int focusCol, focusRow;                 // chunk the active area is centered on, -1 before first update
+    private int loadedMinCol, loadedMaxCol, loadedMinRow, loadedMaxRow;    // chunks enemies are loaded from
+
+    private int[] slotRecords;                      // enemy record of each slot of the level's EnemyStore
+    private GameRectangle[] wallPool;               // walls of the active chunks, reused as chunks change
+    private final WallGrid wallGrid;                // rebuilt over the active walls as chunks change
+    private float[] stoppedTimes;                   // move time by enemy record, null until a stopped enemy is dropped
+
+    /**
+     * Constructor for the streamer of a compiled level. The compiled data is only read, so the definition can be
+     * shared by several streamers.
+     * @param level the level the chunks are loaded into
+     * @param enemyFactory factory creating the level's enemies
+     * @param definition the compiled level's definition
+     */
+    public LevelStreamer(Level level, EnemyFactory enemyFactory, LevelDefinition definition) {
+        this.level = level;
+        this.enemyFactory = enemyFactory;
+        buffer = definition.compiled;
+        step = definition.step;
+        chunkSize = definition.chunkSize;
+        cols = definition.chunkCols;
+        rows = definition.chunkRows;
+        chunkEnemyStart = definition.chunkEnemyStart;
+        chunkWallStart = definition.chunkWallStart;
+        enemyBase = definition.enemyBase;
+        wallBase = definition.wallBase;
+        activeRadius = DEFAULT_ACTIVE_RADIUS;
+        enemyPadding = pathPadding(definition.movePatterns, enemyFactory.getMaxSize(), chunkSize);
+        focusCol = focusRow = -1;
+        loadedMinCol = loadedMinRow = 0;
+        loadedMaxCol = loadedMaxRow = -1;   // nothing loaded
+        slotRecords = new int[0];
+        wallPool = new GameRectangle[0];
+        wallGrid = new WallGrid(wallPool, chunkSize, chunkSize, WallGrid.DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Gets the number of chunks an enemy's box can reach beyond its start chunk, on any side.
+     * @param patterns the level's move patterns
+     * @param enemySize largest enemy width or height
+     * @param chunkSize size of the chunks
+     * @return padding in chunks
+     */
+    private static int pathPadding(MovePattern[] patterns, float enemySize, float chunkSize) {
+        float reach = 0;
+        for (MovePattern pattern : patterns) {
+            // the box spans [start + min, start + max + size] as the pattern moves it
+            reach = Math.max(reach, Math.max(-pattern.getMinX(), -pattern.getMinY()));
+            reach = Math.max(reach, Math.max(pattern.getMaxX(), pattern.getMaxY()) + enemySize);
+        }
+        return MathUtils.ceil(reach / chunkSize);
+    }
+
+    /**
+     * Sets how many chunks around the focus chunk are kept active, in each direction.
+     * @param activeRadius radius in chunks
+     */
+    public void setActiveRadius(int activeRadius) {
+        this.activeRadius = activeRadius;
+        focusCol = focusRow = -1;
+    }
+
+    /**
+     * Activates the chunks around the focus point and drops the rest, if the focus moved to another chunk.
+     * @param x focus x coordinate
+     * @param y focus y coordinate
+     * @param time time since the level started, enemies in newly active chunks are moved to it
+     * @return true if the active chunks changed
+     */
+    public boolean update(float x, float y, float time) {
+        int col = MathUtils.clamp(MathUtils.floor(x / chunkSize), 0, cols - 1);
+        int row = MathUtils.clamp(MathUtils.floor(y / chunkSize), 0, rows - 1);
+        if (col == focusCol && row == focusRow) { return false; }
+        focusCol = col;
+        focusRow = row;
+        int minCol = Math.max(0, col - activeRadius), maxCol = Math.min(cols - 1, col + activeRadius);
+        int minRow = Math.max(0, row - activeRadius), maxRow = Math.min(rows - 1, row + activeRadius);
+        int minEnemyCol = Math.max(0, minCol - enemyPadding), maxEnemyCol = Math.min(cols - 1, maxCol + enemyPadding);
+        int minEnemyRow = Math.max(0, minRow - enemyPadding), maxEnemyRow = Math.min(rows - 1, maxRow + enemyPadding);
+        dropEnemies(minEnemyCol, maxEnemyCol, minEnemyRow, maxEnemyRow);
+        loadEnemies(minEnemyCol, maxEnemyCol, minEnemyRow, maxEnemyRow, time);
+        loadedMinCol = minEnemyCol;
+        loadedMaxCol = maxEnemyCol;
+        loadedMinRow = minEnemyRow;
+        loadedMaxRow = maxEnemyRow;
+        // the loaded enemies' paths stay within their chunks padded once more
+        float areaX = (minEnemyCol - enemyPadding) * chunkSize, areaY = (minEnemyRow - enemyPadding) * chunkSize;
+        float areaWidth = (maxEnemyCol - minEnemyCol + 1 + enemyPadding * 2) * chunkSize;
+        float areaHeight = (maxEnemyRow - minEnemyRow + 1 + enemyPadding * 2) * chunkSize;
+        level.pathGrid.rebuild(level.enemies, areaX, areaY, areaWidth, areaHeight);
+        level.trajectories.rebuild(level.enemies, areaX, areaY, areaWidth, areaHeight);
+        loadWalls(minCol, maxCol, minRow, maxRow);
+        return true;
+    }
+
+    /**
+     * Drops the loaded enemies whose chunks are out of range, keeping the rest in order. The move time of dropped
+     * enemies that were stopped is recorded, so they stay stopped when reactivated.
+     */
+    private void dropEnemies(int minCol, int maxCol, int minRow, int maxRow) {
+        EnemyStore enemies = level.enemies;
+        int kept = 0;
+        for (int i = 0; i < enemies.size; i++) {
+            int r = slotRecords[i];
+            int chunk = chunkOf(r);
+            int col = chunk % cols, row = chunk / cols;
+            if (col >= minCol && col <= maxCol && row >= minRow && row <= maxRow) {
+                if (kept != i) {
+                    enemies.copy(i, kept);
+                    slotRecords[kept] = r;
+                }
+                kept++;
+            } else if (enemies.pattern[i] == EnemyStore.NO_PATTERN) {
+                if (stoppedTimes == null) {
+                    stoppedTimes = new float[chunkEnemyStart[cols * rows]];
+                    Arrays.fill(stoppedTimes, NOT_STOPPED);
+                }
+                stoppedTimes[r] = enemies.moveTime[i];
+            }
+        }
+        enemies.size = kept;
+    }
+
+    /**
+     * Adds the enemies of the chunks in range that are not loaded yet to the level's enemies.
+     */
+    private void loadEnemies(int minCol, int maxCol, int minRow, int maxRow, float time) {
+        int count = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            count += records(row, minCol, firstRunEnd(row, maxCol))
+                    + records(row, secondRunStart(row, minCol, maxCol), maxCol);
+        }
+        EnemyStore enemies = level.enemies;
+        enemies.ensureCapacity(enemies.size + count);
+        if (slotRecords.length < enemies.size + count) {
+            int[] grown = new int[enemies.size + count];
+            System.arraycopy(slotRecords, 0, grown, 0, enemies.size);
+            slotRecords = grown;
+        }
+        int loaded = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            loaded = loadRun(row, minCol, firstRunEnd(row, maxCol), time, loaded, count);
+            loaded = loadRun(row, secondRunStart(row, minCol, maxCol), maxCol, time, loaded, count);
+        }
+        enemies.sortByAnimation(slotRecords);
+    }
+
+    /**
+     * Loads the enemies of a run of chunks in a row.
+     * @param loaded enemies loaded so far by this update, for the load progress
+     * @param count enemies loaded by this update
+     * @return enemies loaded so far, including this run's
+     */
+    private int loadRun(int row, int fromCol, int toCol, float time, int loaded, int count) {
+        if (toCol < fromCol) { return loaded; }
+        EnemyStore enemies = level.enemies;
+        // chunks of a row are consecutive, so are their records
+        for (int r = chunkEnemyStart[row * cols + fromCol], end = chunkEnemyStart[row * cols + toCol + 1];
+             r < end; r++) {
+            int position = enemyBase + r * ENEMY_RECORD_SIZE;
+            int i = enemyFactory.createEnemy(enemies, buffer.getShort(position),
+                    buffer.getShort(position + 4) * step, buffer.getShort(position + 6) * step,
+                    buffer.getShort(position + 2));
+            slotRecords[i] = r;
+            if (loaded++ % Level.PROGRESS_INTERVAL == 0) { level.setBuildProgress(loaded, count); }
+            boolean stopped = stoppedTimes != null && stoppedTimes[r] != NOT_STOPPED;
+            enemies.moveTime[i] = stopped ? stoppedTimes[r] : time;
+            enemies.resolve(i);
+            if (stopped) { enemies.stop(i); }
+        }
+        return loaded;
+    }
+
+    /**
+     * Gets the last column of the first run of chunks in a row that are not loaded yet. The run starts at the first
+     * column in range, and is empty if that chunk is loaded.
+     */
+    private int firstRunEnd(int row, int maxCol) {
+        return row >= loadedMinRow && row <= loadedMaxRow ? Math.min(maxCol, loadedMinCol - 1) : maxCol;
+    }
+
+    /**
+     * Gets the first column of the second run of chunks in a row that are not loaded yet, the one after the loaded
+     * chunks. The run ends at the last column in range.
+     */
+    private int secondRunStart(int row, int minCol, int maxCol) {
+        return row >= loadedMinRow && row <= loadedMaxRow ? Math.max(minCol, loadedMaxCol + 1) : maxCol + 1;
+    }
+
+    /**
+     * Gets the number of enemy records of a run of chunks in a row, 0 if the run is empty.
+     */
+    private int records(int row, int fromCol, int toCol) {
+        if (toCol < fromCol) { return 0; }
+        return chunkEnemyStart[row * cols + toCol + 1] - chunkEnemyStart[row * cols + fromCol];
+    }
+
+    /**
+     * Gets the chunk an enemy record is in. Records are stored chunk by chunk, so this is the last chunk starting at
+     * or before the record.
+     * @param record index of the enemy record
+     * @return index of the chunk, row * cols + col
+     */
+    private int chunkOf(int record) {
+        int low = 0, high = cols * rows - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunkEnemyStart[mid] <= record) { low = mid; } else { high = mid - 1; }
+        }
+        return low;
+    }
+
+    /**
+     * Replaces the level's walls with the walls of the active chunks and rebuilds the wall grid over them.
+     */
+    private void loadWalls(int minCol, int maxCol, int minRow, int maxRow) {
+        int count = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            count += chunkWallStart[row * cols + maxCol + 1] - chunkWallStart[row * cols + minCol];
+        }
+        if (wallPool.length < count) {
+            GameRectangle[] grown = new GameRectangle[count];
+            System.arraycopy(wallPool, 0, grown, 0, wallPool.length);
+            for (int i = wallPool.length; i < count; i++) { grown[i] = new GameRectangle(0, 0); }
+            wallPool = grown;
+        }
+        int w = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int r = chunkWallStart[row * cols + minCol], end = chunkWallStart[row * cols + maxCol + 1];
+                 r < end; r++) {
+                int position = wallBase + r * WALL_RECORD_SIZE;
+                GameRectangle wall = wallPool[w++];
+                wall.setPosition(buffer.getShort(position) * step, buffer.getShort(position + 2) * step);
+                wall.setSize(buffer.getShort(position + 4) * step, buffer.getShort(position + 6) * step);
+            }
+        }
+        level.walls = wallPool;
+        level.wallCount = count;
+        wallGrid.rebuild(wallPool, count, minCol * chunkSize, minRow * chunkSize,
+                (maxCol - minCol + 1) * chunkSize, (maxRow - minRow + 1) * chunkSize);
+        level.wallGrid = wallGrid;
+    }
+}
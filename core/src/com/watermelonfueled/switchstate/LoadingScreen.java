@@ -0,0 +1,136 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+/**
+ * Screen shown while a level loads. Files are read and game objects built on a background thread while this screen
+ * draws the progress, then the level is handed to the {@link GameScreen} on the render thread.
+ */
+public class LoadingScreen implements Screen {
+    private final String TAG = "LoadingScreen";     // log tag
+    private final SwitchStateGame game;
+    private final AsyncExecutor executor;
+    private final EnemyFactory enemyFactory;        // shared by all loaded levels
+    private final LevelCache levelCache;            // parsed levels, so reloading a level skips reading its file
+
+    private AsyncResult<Level> result;
+    private Level level;
+    private Button progressText;
+    private int shownPercent;
+    private final float BUTTON_WIDTH = 256f;
+
+    /**
+     * Constructor for the loading screen.
+     * @param game the game
+     */
+    public LoadingScreen(SwitchStateGame game) {
+        this.game = game;
+        executor = new AsyncExecutor(1);
+        enemyFactory = EnemyFactory.instantiate();
+        levelCache = new LevelCache();
+        progressText = new Button(AssetManager.resumeButton);
+        progressText.setSize(BUTTON_WIDTH, BUTTON_WIDTH / 4);
+        progressText.setPosition((game.stage.getWidth() - progressText.getWidth()) / 2,
+                (game.stage.getHeight() - progressText.getHeight()) / 2);
+    }
+
+    /**
+     * Starts loading a level in the background. Switch to this screen afterwards to show the progress.
+     * @param levelId the level to load
+     */
+    public void load(final int levelId) {
+        Gdx.app.log(TAG, "Loading level " + levelId + " in background...");
+        final Level loading = new Level(enemyFactory);
+        level = loading;
+        shownPercent = -1;
+        result = executor.submit(new AsyncTask<Level>() {
+            @Override
+            public Level call() {
+                loading.loadLevel(levelId, levelCache);
+                return loading;
+            }
+        });
+    }
+
+    /**
+     * Called when screen renders itself. Draws the progress, and once loading is done finishes setting up the level
+     * and switches to the game screen.
+     * @param delta time since last render
+     */
+    public void render(float delta) {
+        if (result != null && result.isDone()) {
+            finishLoading();
+            return;
+        }
+        int percent = (int) (level.loadProgress * 100);
+        if (percent != shownPercent) {
+            shownPercent = percent;
+            progressText.setText("LOADING " + percent + "%");
+        }
+        game.renderer.clear();
+        game.stage.draw();
+    }
+
+    /**
+     * Hands the loaded level to the game screen, which sets up its graphics, and switches to it.
+     */
+    private void finishLoading() {
+        Level loaded;
+        try {
+            loaded = result.get();
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error(TAG, "Loading level failed.", e);
+            result = null;
+            game.setScreen(game.startScreen);
+            return;
+        }
+        result = null;
+        Gdx.app.log(TAG, "Switching to game screen...");
+        game.gameScreen.setLevel(loaded);
+        game.setScreen(game.gameScreen);
+    }
+
+    /**
+     * Called when screen size changes.
+     * @param width new screen width
+     * @param height new screen height
+     */
+    public void resize(int width, int height) {
+        game.stage.getViewport().update(width, height, false);
+    }
+
+    public void pause() {
+
+    }
+
+    public void resume() {
+
+    }
+
+    /**
+     * Called when this screen becomes the screen to display.
+     */
+    public void show() {
+        resize(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        game.stage.addActor(progressText);
+    }
+
+    /**
+     * Called when this screen is removed as the screen to display
+     */
+    public void hide() {
+        progressText.remove();
+    }
+
+    /**
+     * Stops the background loading thread.
+     */
+    public void dispose() {
+        executor.dispose();
+    }
+}
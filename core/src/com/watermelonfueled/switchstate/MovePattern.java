@@ -10,35 +10,79 @@ import java.util.Arrays;
 public class MovePattern {
 
     public enum LoopMode { CIRCULAR, PINGPONG, ONCE };  // 1>2>3>1~, 1>2>3>2>1~, 1>2>3.
+    public static final int LOOP_ONCE = 1, LOOP_CIRCULAR = 2, LOOP_PINGPONG = 3;   // loop modes in level data
+    public static final int MAX_BUCKETS = 4096;         // most time buckets baking doubles to
     private LoopMode loopMode;
     private float duration;
+    private float invDuration;                          // 1 / duration, wraps looping time without a division
     private Vector2[] points;                           // vertex points of the movement pattern
     private float[] segmentStartTimes, segmentDurations;
+    private float[] segmentInvDurations;                // 1 / segmentDurations, avoids a division per update
+    private int[] bucketSegments;                       // segment at the start of each time bucket, null if not baked
+    private int[] bucketNextSegments;                   // segment from the one boundary within each bucket on
+    private float bucketsPerTime;                       // number of buckets / duration
+    private float minX, minY, maxX, maxY;               // bounding box of the points, contains the whole path
 
     /**
      * Constructor for MovePattern.
      */
     public MovePattern(float duration, int loop, float[] pointsX, float[] pointsY) {
+        this(duration, loop, pointsX, pointsY, 0);
+    }
+
+    /**
+     * Constructor for a MovePattern baked into a lookup table of time buckets. Each bucket holds the segment the
+     * pattern is in at the start of the bucket and the one after the segment boundary within it, so finding the
+     * current segment takes one comparison instead of a binary search. The buckets are doubled until no bucket holds
+     * more than one boundary, up to MAX_BUCKETS, past which the binary search is used.
+     * @param buckets number of time buckets, 0 to use a binary search instead
+     */
+    public MovePattern(float duration, int loop, float[] pointsX, float[] pointsY, int buckets) {
         this.duration = duration;
         setLoopMode(loop);
         setPoints(pointsX,pointsY);
         calculateSegmentTimes();
+        calculateInverseDurations();
+        calculateBounds();
+        if (buckets > 0) { bake(buckets); }
+    }
+
+    /**
+     * Constructor for a MovePattern from compiled level data, see {@link LevelCompiler}. The points are already
+     * expanded for the loop mode and the segment times already calculated.
+     * @param points vertex points, interleaved x and y
+     * @param segmentStartTimes start time of each segment
+     * @param segmentDurations duration of each segment
+     */
+    MovePattern(float duration, int loop, float[] points, float[] segmentStartTimes, float[] segmentDurations,
+                int buckets) {
+        this.duration = duration;
+        setLoopMode(loop);
+        this.points = new Vector2[points.length / 2];
+        for (int i = 0; i < this.points.length; i++) {
+            this.points[i] = new Vector2(points[i * 2], points[i * 2 + 1]);
+        }
+        this.segmentStartTimes = segmentStartTimes;
+        this.segmentDurations = segmentDurations;
+        calculateInverseDurations();
+        calculateBounds();
+        if (buckets > 0) { bake(buckets); }
     }
 
     /**
      * Set loop mode. Used when loading level data json files with an int corresponding to the loopmodes
-     * @param mode 1 for loop once, 2 for circular, 3 for pingpong
+     * @param mode LOOP_ONCE, LOOP_CIRCULAR or LOOP_PINGPONG
      */
     private void setLoopMode(int mode){
         switch (mode){
             default:
-            case 1:
+            case LOOP_ONCE:
                 setLoopOnce();
                 break;
-            case 2:
+            case LOOP_CIRCULAR:
                 setLoopCircular();
                 break;
-            case 3:
+            case LOOP_PINGPONG:
                 setLoopPingpong();
                 break;
         }
@@ -115,6 +159,83 @@ public class MovePattern {
         }
     }
 
+    /**
+     * Calculates the inverse of the duration and of each segment's duration. Only call after segment times are
+     * calculated.
+     */
+    private void calculateInverseDurations(){
+        invDuration = duration > 0 ? 1f / duration : 0f;
+        segmentInvDurations = new float[segmentDurations.length];
+        for (int i = 0; i < segmentDurations.length; i++){
+            segmentInvDurations[i] = segmentDurations[i] > 0 ? 1f / segmentDurations[i] : 0f;
+        }
+    }
+
+    /**
+     * Builds the time bucket lookup table. Only call after segment times are calculated.
+     * @param buckets number of time buckets
+     */
+    private void bake(int buckets){
+        for (int n = buckets; !bake(n, new int[n], new int[n]); n *= 2){
+            if (n >= MAX_BUCKETS) {
+                bucketSegments = bucketNextSegments = null;  // too short segments, keep the binary search
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fills a time bucket lookup table. Segment boundaries are put in buckets by the same expression the lookup uses,
+     * see {@link #bucket(float)}, so rounding can not make a lookup disagree with the binary search.
+     * @param buckets number of time buckets
+     * @param segments set to the segment at the start of each bucket
+     * @param nextSegments set to the segment from the boundary within each bucket on, or the same as segments
+     * @return false if a bucket holds more than one boundary and the table was not kept
+     */
+    private boolean bake(int buckets, int[] segments, int[] nextSegments){
+        bucketSegments = segments;
+        bucketNextSegments = nextSegments;
+        bucketsPerTime = buckets / duration;
+        int last = segmentStartTimes.length - 1;
+        for (int b = 0, i = 0; b < buckets; b++){
+            while (i < last && bucket(segmentStartTimes[i + 1]) < b) { i++; }
+            int next = i;
+            while (next < last && bucket(segmentStartTimes[next + 1]) == b) {
+                // zero length segments start together and are passed at once
+                if (next > i && segmentStartTimes[next + 1] != segmentStartTimes[i + 1]) { return false; }
+                next++;
+            }
+            segments[b] = i;
+            nextSegments[b] = next;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the time bucket of a time within the pattern's duration.
+     */
+    private int bucket(float time){
+        int bucket = (int) (time * bucketsPerTime);
+        return bucket < bucketSegments.length ? bucket : bucketSegments.length - 1;
+    }
+
+    /**
+     * Wraps a time into the pattern's duration by subtracting whole durations, avoiding the float modulo.
+     * @param time time since move pattern had started, not negative
+     * @return time progressed in the current loop, 0 to duration
+     */
+    private float wrap(float time){
+        if (time < duration) { return time; }
+        float progressTime = time - (int) (time * invDuration) * duration;
+        // the product can round either way across a loop boundary
+        if (progressTime < 0) {
+            progressTime += duration;
+        } else if (progressTime >= duration) {
+            progressTime -= duration;
+        }
+        return progressTime;
+    }
+
     /**
      * Updates the inputted vector with coordinates of the move pattern according to how much time has past
      * @param time time since move pattern had started
@@ -125,10 +246,11 @@ public class MovePattern {
         // return false if end of non looping pattern
         if (loopMode == LoopMode.ONCE && time > duration) { return false; }
 
-        float progressTime = time % duration;           // time progressed in move pattern
-        int i = segmentIndexSearch(progressTime);       // get index of current segment
+        float progressTime = wrap(time);                // time progressed in move pattern
+        int i = bucketSegments != null ? segmentIndexLookup(progressTime)   // get index of current segment
+                : segmentIndexSearch(progressTime);
         progressTime -= segmentStartTimes[i];           // time progressed in segment
-        vec.set(points[i]).lerp(points[i+1], progressTime/segmentDurations[i]);
+        vec.set(points[i]).lerp(points[i+1], progressTime * segmentInvDurations[i]);
 
         /*
         // segments progressed in pattern
@@ -143,6 +265,125 @@ public class MovePattern {
         return true;
     }
 
+    /**
+     * Gets the straight piece of the path the pattern is on at a time: the translation, how fast it changes and for
+     * how long it keeps changing that way, i.e. until the current segment ends.
+     * @param time time since move pattern had started
+     * @param position vector set to the translation
+     * @param velocity vector set to the change of the translation per second
+     * @return time (s) until the segment ends, infinity if the pattern has completed and no longer moves
+     */
+    public float getMotion(float time, Vector2 position, Vector2 velocity){
+        if (loopMode == LoopMode.ONCE && time >= duration) {
+            getEndPoint(position);
+            velocity.setZero();
+            return Float.POSITIVE_INFINITY;
+        }
+        float progressTime = wrap(time);
+        int i = bucketSegments != null ? segmentIndexLookup(progressTime) : segmentIndexSearch(progressTime);
+        float segmentTime = progressTime - segmentStartTimes[i];
+        position.set(points[i]).lerp(points[i+1], segmentTime * segmentInvDurations[i]);
+        velocity.set(points[i+1]).sub(points[i]).scl(segmentInvDurations[i]);
+        return segmentDurations[i] - segmentTime;
+    }
+
+    /**
+     * Sets the inputted vector to the last point of the move pattern, where non-looping patterns stop.
+     * @param vec vector to be updated
+     */
+    public void getEndPoint(Vector2 vec){
+        vec.set(points[points.length - 1]);
+    }
+
+    /**
+     * Gets the duration of the move pattern.
+     * @return duration
+     */
+    public float getDuration() { return duration; }
+
+    /**
+     * Calculates the bounding box of the points. Positions are interpolated between points so the box contains every
+     * translation the pattern can give.
+     */
+    private void calculateBounds() {
+        minX = maxX = points[0].x;
+        minY = maxY = points[0].y;
+        for (Vector2 point : points) {
+            minX = Math.min(minX, point.x);
+            maxX = Math.max(maxX, point.x);
+            minY = Math.min(minY, point.y);
+            maxY = Math.max(maxY, point.y);
+        }
+    }
+
+    /**
+     * Calculates the bounding box of the translations the pattern gives during part of its duration: the positions at
+     * both ends plus every vertex passed in between.
+     * @param from start of the part, 0 to duration
+     * @param to end of the part, from to duration
+     * @param vec reused for the positions, overwritten
+     * @param bounds set to min x, min y, max x, max y starting at offset
+     * @param offset index of min x in bounds
+     */
+    void getTranslationBounds(float from, float to, Vector2 vec, float[] bounds, int offset){
+        update(from, vec);
+        float minX = vec.x, minY = vec.y, maxX = vec.x, maxY = vec.y;
+        if (to >= duration) { getEndPoint(vec); } else { update(to, vec); }
+        minX = Math.min(minX, vec.x); maxX = Math.max(maxX, vec.x);
+        minY = Math.min(minY, vec.y); maxY = Math.max(maxY, vec.y);
+        for (int i = 1; i < segmentStartTimes.length; i++){
+            if (segmentStartTimes[i] > from && segmentStartTimes[i] < to) {
+                minX = Math.min(minX, points[i].x); maxX = Math.max(maxX, points[i].x);
+                minY = Math.min(minY, points[i].y); maxY = Math.max(maxY, points[i].y);
+            }
+        }
+        bounds[offset] = minX;
+        bounds[offset + 1] = minY;
+        bounds[offset + 2] = maxX;
+        bounds[offset + 3] = maxY;
+    }
+
+    /**
+     * Checks if the pattern stops at its end point instead of looping.
+     * @return true for non-looping patterns
+     */
+    public boolean isLoopOnce() { return loopMode == LoopMode.ONCE; }
+
+    /**
+     * Gets the smallest x translation the pattern gives.
+     * @return min x of the path's bounding box, relative to the start point
+     */
+    public float getMinX() { return minX; }
+
+    /**
+     * Gets the smallest y translation the pattern gives.
+     * @return min y of the path's bounding box, relative to the start point
+     */
+    public float getMinY() { return minY; }
+
+    /**
+     * Gets the largest x translation the pattern gives.
+     * @return max x of the path's bounding box, relative to the start point
+     */
+    public float getMaxX() { return maxX; }
+
+    /**
+     * Gets the largest y translation the pattern gives.
+     * @return max y of the path's bounding box, relative to the start point
+     */
+    public float getMaxY() { return maxY; }
+
+    /**
+     * Finds the index of the current segment according to the time using the time bucket lookup table.
+     * @param time current time within pattern duration
+     * @return index of current segment
+     */
+    private int segmentIndexLookup(float time){
+        int bucket = bucket(time);
+        int next = bucketNextSegments[bucket];
+        return time < segmentStartTimes[next] ? bucketSegments[bucket] : next;
+    }
+
     /**
      * Finds the index of the current segment according to the time.
      * @param time current time within pattern duration
@@ -156,4 +397,22 @@ public class MovePattern {
             return -index - 2;
         }
     }
+
+    /**
+     * Gets the vertex points, expanded for the loop mode.
+     * @return the points
+     */
+    Vector2[] getPoints() { return points; }
+
+    /**
+     * Gets the start time of each segment.
+     * @return segment start times
+     */
+    float[] getSegmentStartTimes() { return segmentStartTimes; }
+
+    /**
+     * Gets the duration of each segment.
+     * @return segment durations
+     */
+    float[] getSegmentDurations() { return segmentDurations; }
 }
@@ -8,5 +8,9 @@ public class MovePatternData {
     public int loopMode;
     public float[] pointsX;
     public float[] pointsY;
+    public int buckets;         // time buckets for baking the pattern, 0 (default) for none. See MovePattern
+    public int curve;           // 0 (default) straight lines, 1 catmull-rom through the points, 2 cubic bezier
+    public int[] easing;        // easing of each segment between points, null (default) for none. See PatternResampler
+    public int samples;         // polyline segments per curved or eased segment, 0 (default) for the default
     public MovePatternData(){}
 }
@@ -0,0 +1,115 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Moves enemies in parallel chunks on a {@link ForkJoinPool}. Each enemy's movement only depends on its own move
+ * time and its read-only {@link MovePattern}, so chunks need no synchronization. Meant for desktop builds with very
+ * large levels; excluded from the GWT build as fork/join is not available there.
+ * <p>
+ * The threshold applies to the enemies moved in a step, which {@link World} limits to the active ones near the
+ * player. That is on purpose: a few dozen enemies move faster on one thread than split across workers. So with the
+ * default active radius everything moves on the calling thread, streamed levels included, and chunks only run in
+ * parallel when the active radius is raised to cover thousands of enemies.
+ */
+public class ParallelEnemyUpdater implements EnemyUpdater {
+    public static final int DEFAULT_THRESHOLD = 4096;   // enemies per chunk, fewer enemies are moved sequentially
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final Chunk[] chunks;           // reused every step, one per worker
+    private final MoveAll moveAll;
+    private EnemyStore enemies;
+    private int[] indices;
+    private float delta;
+
+    /**
+     * Constructor using the common pool and default threshold.
+     */
+    public ParallelEnemyUpdater() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor for the updater.
+     * @param pool the pool to run chunks on
+     * @param threshold minimum enemies per chunk; below twice this all enemies are moved on the calling thread
+     */
+    public ParallelEnemyUpdater(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+        chunks = new Chunk[pool.getParallelism()];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk();
+        }
+        moveAll = new MoveAll();
+    }
+
+    /**
+     * Updates the positions of the enemies, splitting them into one chunk per worker if there are enough of them,
+     * see the class comment.
+     * Returns once every chunk is done.
+     * @param enemies the enemies
+     * @param indices indices of the enemies to move
+     * @param count number of indices used
+     * @param delta time (s) since last update
+     */
+    @Override
+    public void move(EnemyStore enemies, int[] indices, int count, float delta) {
+        int chunkCount = Math.min(chunks.length, count / threshold);
+        if (chunkCount < 2) {
+            enemies.move(indices, count, delta);
+            return;
+        }
+        this.enemies = enemies;
+        this.indices = indices;
+        this.delta = delta;
+        int chunkSize = (count + chunkCount - 1) / chunkCount;
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i].reinitialize();
+            chunks[i].from = i * chunkSize;
+            chunks[i].to = Math.min(count, (i + 1) * chunkSize);
+        }
+        moveAll.reinitialize();
+        moveAll.chunkCount = chunkCount;
+        pool.invoke(moveAll);
+        this.enemies = null;
+        this.indices = null;
+    }
+
+    /**
+     * Forks the chunks and waits for all of them.
+     */
+    private class MoveAll extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        int chunkCount;
+
+        @Override
+        protected void compute() {
+            for (int i = 1; i < chunkCount; i++) {
+                chunks[i].fork();
+            }
+            chunks[0].invoke();
+            for (int i = 1; i < chunkCount; i++) {
+                chunks[i].join();
+            }
+        }
+    }
+
+    /**
+     * A range of the indices moved by one worker, with its own translation vector.
+     */
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        int from, to;
+        final Vector2 translation = new Vector2();
+
+        @Override
+        protected void compute() {
+            enemies.move(indices, from, to, delta, translation);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Uniform grid over the paths of the enemies of a {@link Level}. An enemy's path box is its move pattern's bounding
+ * box placed at its start point and grown by its size, so it contains every position the enemy can reach. The boxes
+ * do not change as enemies move, so the grid is only rebuilt when the level's enemies are replaced.
+ */
+public class PathGrid {
+    public static final float DEFAULT_CELL_SIZE = 32f;  // world units per cell
+
+    private EnemyStore enemies;
+    private int enemyCount;
+    private float originX, originY;     // bottom left corner of the grid
+    private float cellSize, invCellSize;
+    private int cols, rows;
+    private float[] boxLeft, boxBottom, boxRight, boxTop;   // path box of each enemy
+    private int[] cellStart;        // index into cellEnemies of the first enemy of each cell, cols*rows+1 long
+    private int[] cellEnemies;      // enemy indices grouped by cell
+    private int[] fill;             // enemies placed in each cell so far, used while building
+    private int[] enemyStamp;       // last query each enemy was checked in, avoids checking an enemy twice
+    private int stamp;
+    private int checks;             // path boxes checked by the last query
+
+    /**
+     * Constructor for an empty grid, see {@link #rebuild(EnemyStore, float, float, float, float)}.
+     * @param cellSize size of each square cell
+     */
+    public PathGrid(float cellSize) {
+        this.cellSize = cellSize;
+        invCellSize = 1f / cellSize;
+        boxLeft = boxBottom = boxRight = boxTop = new float[0];
+        enemyStamp = new int[0];
+    }
+
+    /**
+     * Rebuilds the grid over the paths of the enemies in an area, reusing its arrays when they are large enough.
+     * Paths leaving the area are clamped to its border cells.
+     * @param enemies the enemies
+     * @param originX x coordinate of the area's bottom left corner
+     * @param originY y coordinate of the area's bottom left corner
+     * @param width width of the area
+     * @param height height of the area
+     */
+    public void rebuild(EnemyStore enemies, float originX, float originY, float width, float height) {
+        this.enemies = enemies;
+        enemyCount = enemies.size;
+        this.originX = originX;
+        this.originY = originY;
+        cols = Math.max(1, MathUtils.ceil(width * invCellSize));
+        rows = Math.max(1, MathUtils.ceil(height * invCellSize));
+        if (boxLeft.length < enemyCount) {
+            boxLeft = new float[enemyCount];
+            boxBottom = new float[enemyCount];
+            boxRight = new float[enemyCount];
+            boxTop = new float[enemyCount];
+            enemyStamp = new int[enemyCount];
+            stamp = 0;
+        }
+        for (int i = 0; i < enemyCount; i++) {
+            calculateBox(i);
+        }
+
+        int cells = cols * rows;
+        if (cellStart == null || cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+            fill = new int[cells];
+        } else {
+            for (int c = 0; c <= cells; c++) { cellStart[c] = 0; }
+            for (int c = 0; c < cells; c++) { fill[c] = 0; }
+        }
+        // two passes; counting enemies per cell, then placing them
+        for (int i = 0; i < enemyCount; i++) {
+            int minCol = col(boxLeft[i]), maxCol = col(boxRight[i]);
+            int minRow = row(boxBottom[i]), maxRow = row(boxTop[i]);
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minCol; c <= maxCol; c++) {
+                    cellStart[r * cols + c + 1]++;
+                }
+            }
+        }
+        for (int c = 1; c <= cells; c++) {
+            cellStart[c] += cellStart[c - 1];
+        }
+        if (cellEnemies == null || cellEnemies.length < cellStart[cells]) { cellEnemies = new int[cellStart[cells]]; }
+        for (int i = 0; i < enemyCount; i++) {
+            int minCol = col(boxLeft[i]), maxCol = col(boxRight[i]);
+            int minRow = row(boxBottom[i]), maxRow = row(boxTop[i]);
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minCol; c <= maxCol; c++) {
+                    int cell = r * cols + c;
+                    cellEnemies[cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the path box of an enemy. Enemies without a move pattern only cover their current position.
+     * @param i index of the enemy
+     */
+    private void calculateBox(int i) {
+        if (enemies.pattern[i] == EnemyStore.NO_PATTERN) {
+            boxLeft[i] = enemies.x[i];
+            boxBottom[i] = enemies.y[i];
+            boxRight[i] = enemies.x[i] + enemies.width[i];
+            boxTop[i] = enemies.y[i] + enemies.height[i];
+        } else {
+            MovePattern pattern = enemies.patterns[enemies.pattern[i]];
+            boxLeft[i] = enemies.startX[i] + pattern.getMinX();
+            boxBottom[i] = enemies.startY[i] + pattern.getMinY();
+            boxRight[i] = enemies.startX[i] + pattern.getMaxX() + enemies.width[i];
+            boxTop[i] = enemies.startY[i] + pattern.getMaxY() + enemies.height[i];
+        }
+    }
+
+    /**
+     * Finds the enemies whose path box overlaps a rectangle. Only the cells the rectangle touches are checked.
+     * @param left x coordinate of the rectangle's left side
+     * @param bottom y coordinate of the rectangle's bottom side
+     * @param right x coordinate of the rectangle's right side
+     * @param top y coordinate of the rectangle's top side
+     * @param out the enemies found are added to it, each once
+     * @return number of enemies found
+     */
+    public int query(float left, float bottom, float right, float top, IntArray out) {
+        nextStamp();
+        checks = 0;
+        int found = 0;
+        int minCol = col(left), maxCol = col(right);
+        int minRow = row(bottom), maxRow = row(top);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int cell = r * cols + c;
+                for (int j = cellStart[cell], end = cellStart[cell + 1]; j < end; j++) {
+                    int i = cellEnemies[j];
+                    if (enemyStamp[i] == stamp) { continue; }
+                    enemyStamp[i] = stamp;
+                    checks++;
+                    if (boxLeft[i] <= right && boxRight[i] >= left && boxBottom[i] <= top && boxTop[i] >= bottom) {
+                        out.add(i);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Advances the query stamp, clearing the stamps if it wraps around.
+     */
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            stamp = 1;
+            for (int i = 0; i < enemyStamp.length; i++) { enemyStamp[i] = 0; }
+        }
+    }
+
+    /**
+     * Gets the column of the cell containing the x coordinate, clamped to the grid.
+     * @param x x coordinate
+     * @return column index
+     */
+    private int col(float x) {
+        int c = MathUtils.floor((x - originX) * invCellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    /**
+     * Gets the row of the cell containing the y coordinate, clamped to the grid.
+     * @param y y coordinate
+     * @return row index
+     */
+    private int row(float y) {
+        int r = MathUtils.floor((y - originY) * invCellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    /**
+     * Gets the number of path boxes checked by the last query.
+     * @return path boxes checked
+     */
+    public int getChecks() { return checks; }
+}
@@ -0,0 +1,214 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Builds {@link MovePattern}s from level data. Curved and eased patterns are resampled at load into dense polylines
+ * with their own vertex times, so at runtime they cost the same lerp as straight ones. Each curved segment gets an
+ * arc length lookup table, so its samples are spaced by distance travelled rather than by curve parameter, and its
+ * easing decides how far along the segment each evenly spaced sample time is.
+ */
+public class PatternResampler {
+    public static final int LINEAR = 0, CATMULL_ROM = 1, BEZIER = 2;                   // curves
+    public static final int NO_EASING = 0, EASE_IN = 1, EASE_OUT = 2, EASE_IN_OUT = 3; // easings
+    public static final int DEFAULT_SAMPLES = 16;   // polyline segments per segment between points
+    private static final int ARC_TABLE_FACTOR = 8;  // arc length table entries per sample
+
+    private PatternResampler() {}
+
+    /**
+     * Creates the move pattern described by the data. Patterns with straight lines and no easing are built as
+     * before, others are resampled.
+     * @param data the pattern's level data
+     * @param buckets number of time buckets for the pattern's segments between points, 0 to use a binary search
+     *                instead. Scaled by {@link #bucketCount} for resampled patterns. See {@link MovePattern}
+     * @return the pattern
+     */
+    public static MovePattern create(MovePatternData data, int buckets) {
+        if (!isResampled(data)) {
+            return new MovePattern(data.duration, data.loopMode, data.pointsX, data.pointsY, buckets);
+        }
+        int samples = samples(data);
+        boolean circular = data.loopMode == MovePattern.LOOP_CIRCULAR;
+        boolean pingpong = data.loopMode == MovePattern.LOOP_PINGPONG;
+        int segments = segmentCount(data, circular);
+
+        // arc length of each segment, time is shared between segments by it as for straight patterns
+        float[][] arcTables = new float[segments][];
+        float[] lengths = new float[segments];
+        float totalLength = 0;
+        Vector2 point = new Vector2(), previous = new Vector2();
+        for (int k = 0; k < segments; k++) {
+            int entries = samples * ARC_TABLE_FACTOR;
+            float[] table = new float[entries + 1];
+            evaluate(data, circular, k, 0, previous);
+            for (int e = 1; e <= entries; e++) {
+                evaluate(data, circular, k, (float) e / entries, point);
+                table[e] = table[e - 1] + point.dst(previous);
+                previous.set(point);
+            }
+            arcTables[k] = table;
+            lengths[k] = table[entries];
+            totalLength += lengths[k];
+        }
+
+        // forward polyline, a pingpong pattern spends half its duration going back along it
+        float forwardDuration = pingpong ? data.duration / 2 : data.duration;
+        int forwardPoints = segments * samples + 1;
+        int pointCount = pingpong ? forwardPoints * 2 - 1 : forwardPoints;
+        float[] points = new float[pointCount * 2];
+        float[] startTimes = new float[pointCount - 1], durations = new float[pointCount - 1];
+        float time = 0;
+        int n = 0;
+        evaluate(data, circular, 0, 0, point);
+        points[0] = point.x;
+        points[1] = point.y;
+        for (int k = 0; k < segments; k++) {
+            float segmentDuration = totalLength > 0 ? forwardDuration * lengths[k] / totalLength
+                    : forwardDuration / segments;
+            int easing = data.easing != null && k < data.easing.length ? data.easing[k] : NO_EASING;
+            for (int j = 1; j <= samples; j++) {
+                float distance = ease(easing, (float) j / samples) * lengths[k];
+                evaluate(data, circular, k, parameterAt(arcTables[k], distance), point);
+                startTimes[n] = time;
+                durations[n] = segmentDuration / samples;
+                time += durations[n];
+                n++;
+                points[n * 2] = point.x;
+                points[n * 2 + 1] = point.y;
+            }
+        }
+        if (pingpong) {
+            for (int i = forwardPoints; i < pointCount; i++) {
+                int mirror = pointCount - 1 - i;
+                points[i * 2] = points[mirror * 2];
+                points[i * 2 + 1] = points[mirror * 2 + 1];
+                startTimes[i - 1] = time;
+                durations[i - 1] = durations[mirror];
+                time += durations[i - 1];
+            }
+        }
+        return new MovePattern(data.duration, data.loopMode, points, startTimes, durations, bucketCount(data, buckets));
+    }
+
+    /**
+     * Gets the number of time buckets a pattern is baked with. Resampling splits each segment between points into
+     * samples, so resampled patterns get as many more buckets to keep the lookup to a single step.
+     * @param data the pattern's level data
+     * @param buckets number of time buckets for the pattern's segments between points, 0 for none
+     * @return number of time buckets of the created pattern
+     */
+    public static int bucketCount(MovePatternData data, int buckets) {
+        return isResampled(data) ? buckets * samples(data) : buckets;
+    }
+
+    /**
+     * Checks if a pattern is resampled, it is curved or eased.
+     */
+    private static boolean isResampled(MovePatternData data) {
+        return data.curve != LINEAR || data.easing != null;
+    }
+
+    /**
+     * Gets the number of polyline segments each segment between points is resampled into.
+     */
+    private static int samples(MovePatternData data) {
+        return data.samples > 0 ? data.samples : DEFAULT_SAMPLES;
+    }
+
+    /**
+     * Gets the number of segments between points. Circular patterns have a last segment back to the first point.
+     * Bezier patterns take two control points between each pair of points.
+     */
+    private static int segmentCount(MovePatternData data, boolean circular) {
+        int count = data.pointsX.length;
+        if (data.curve == BEZIER) {
+            if ((circular ? count : count - 1) % 3 != 0 || count < 3) {
+                throw new GdxRuntimeException("Bezier move pattern needs 3n+1 points, or 3n if circular: " + count);
+            }
+            return circular ? count / 3 : (count - 1) / 3;
+        }
+        if (count < 2) { throw new GdxRuntimeException("Move pattern needs at least 2 points"); }
+        return circular ? count : count - 1;
+    }
+
+    /**
+     * Sets the vector to a point on a segment of the pattern's curve.
+     * @param k index of the segment
+     * @param u curve parameter, 0 at the segment's start to 1 at its end
+     */
+    private static void evaluate(MovePatternData data, boolean circular, int k, float u, Vector2 out) {
+        float[] xs = data.pointsX, ys = data.pointsY;
+        int count = xs.length;
+        switch (data.curve) {
+            case CATMULL_ROM: {
+                // neighbours wrap for circular patterns, are clamped to the ends otherwise
+                int p0 = circular ? (k - 1 + count) % count : Math.max(k - 1, 0);
+                int p1 = k % count;
+                int p2 = circular ? (k + 1) % count : Math.min(k + 1, count - 1);
+                int p3 = circular ? (k + 2) % count : Math.min(k + 2, count - 1);
+                out.set(catmullRom(xs[p0], xs[p1], xs[p2], xs[p3], u), catmullRom(ys[p0], ys[p1], ys[p2], ys[p3], u));
+                break;
+            }
+            case BEZIER: {
+                int a = k * 3, b = (k * 3 + 3) % count;
+                out.set(bezier(xs[a], xs[a + 1], xs[a + 2], xs[b], u), bezier(ys[a], ys[a + 1], ys[a + 2], ys[b], u));
+                break;
+            }
+            default: {
+                int a = k % count, b = (k + 1) % count;
+                out.set(xs[a] + (xs[b] - xs[a]) * u, ys[a] + (ys[b] - ys[a]) * u);
+                break;
+            }
+        }
+    }
+
+    private static float catmullRom(float p0, float p1, float p2, float p3, float u) {
+        return 0.5f * (2 * p1 + (p2 - p0) * u + (2 * p0 - 5 * p1 + 4 * p2 - p3) * u * u
+                + (3 * p1 - p0 - 3 * p2 + p3) * u * u * u);
+    }
+
+    private static float bezier(float a, float c1, float c2, float b, float u) {
+        float v = 1 - u;
+        return v * v * v * a + 3 * v * v * u * c1 + 3 * v * u * u * c2 + u * u * u * b;
+    }
+
+    /**
+     * Finds the curve parameter at which a distance along the segment is reached, interpolating the arc length table.
+     * @param table cumulative arc length at evenly spaced parameters
+     * @param distance distance from the segment's start
+     * @return curve parameter
+     */
+    private static float parameterAt(float[] table, float distance) {
+        int last = table.length - 1;
+        if (distance >= table[last]) { return 1; }
+        int e = 1;
+        while (table[e] < distance) { e++; }
+        float span = table[e] - table[e - 1];
+        float fraction = span > 0 ? (distance - table[e - 1]) / span : 0;
+        return (e - 1 + fraction) / last;
+    }
+
+    /**
+     * Gets how far along a segment an easing is at a share of the segment's time.
+     * @param easing the easing, e.g. EASE_IN
+     * @param t share of the segment's time, 0 to 1
+     * @return share of the segment's length, 0 to 1
+     */
+    private static float ease(int easing, float t) {
+        switch (easing) {
+            case EASE_IN:
+                return t * t * t;
+            case EASE_OUT:
+                float v = 1 - t;
+                return 1 - v * v * v;
+            case EASE_IN_OUT:
+                if (t < 0.5f) { return 4 * t * t * t; }
+                float w = 2 - 2 * t;
+                return 1 - w * w * w / 2;
+            default:
+                return t;
+        }
+    }
+}
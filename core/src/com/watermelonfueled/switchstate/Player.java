@@ -10,6 +10,7 @@ public class Player extends GameRectangle {
     private final int MAX_SPEED = 25; // units/s
     private float rotation;
     private Vector2 velocity;
+    private float prevX, prevY;         // position at the previous simulation tick
 
     /**
      * Constructor for player.
@@ -17,38 +18,44 @@ public class Player extends GameRectangle {
     public Player() { super(3,3); velocity = new Vector2(); }
 
     /**
-     * Moves the player according to its current velocity.
+     * Moves the player along the x axis according to its velocity, stopping against any wall in the way.
      * @param delta time (s) since last update in game
+     * @param walls the walls of the level
      */
-    public void move(float delta) {
-        translate(  -velocity.x * delta,
-                    -velocity.y * delta);
-    }
-
-    public void moveX(float delta) {
-        translateX( -velocity.x * delta );
-    }
-
-    public void moveY(float delta) {
-        translateY( -velocity.y * delta);
+    public void moveX(float delta, WallGrid walls) {
+        translateX(walls.sweepX(this, -velocity.x * delta));
     }
 
     /**
-     * Called to cancel a previous move. Used for walls and other impassable obstacles
+     * Moves the player along the y axis according to its velocity, stopping against any wall in the way.
      * @param delta time (s) since last update in game
+     * @param walls the walls of the level
      */
-    public void cancelMove(float delta) {
-        translate(  velocity.x * delta,
-                    velocity.y * delta);
+    public void moveY(float delta, WallGrid walls) {
+        translateY(walls.sweepY(this, -velocity.y * delta));
     }
 
-    public void cancelMoveX(float delta) {
-        translateX(velocity.x * delta);
+    /**
+     * Saves the current position as the previous tick's position. Called before each simulation tick.
+     */
+    public void savePosition() {
+        prevX = getX();
+        prevY = getY();
     }
 
-    public void cancelMoveY(float delta) {
-        translateY(velocity.y * delta);
-    }
+    /**
+     * Gets the x coordinate to draw at, interpolated between the previous and current tick.
+     * @param alpha progress from the previous tick (0) to the current tick (1)
+     * @return interpolated x coordinate
+     */
+    public float getDrawX(float alpha) { return prevX + (getX() - prevX) * alpha; }
+
+    /**
+     * Gets the y coordinate to draw at, interpolated between the previous and current tick.
+     * @param alpha progress from the previous tick (0) to the current tick (1)
+     * @return interpolated y coordinate
+     */
+    public float getDrawY(float alpha) { return prevY + (getY() - prevY) * alpha; }
 
     /**
      * Sets the direction of the player and velocity in that new direction
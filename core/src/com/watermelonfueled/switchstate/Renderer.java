@@ -3,11 +3,15 @@ package com.watermelonfueled.switchstate;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
 
 /**
  * Handles the drawing of elements on to the device screen in game
@@ -15,14 +19,23 @@ import com.badlogic.gdx.utils.Disposable;
 public class Renderer implements Disposable{
     private SwitchStateGame game;
     private SpriteBatch batch;
+    private SpriteCache levelCache;         // static level art, built once per level
+    private int levelCacheCapacity;         // sprites the cache can hold, it is reused while they fit
+    private int bgCacheId, wallCacheId;
+    private int cachedWallsVersion;         // level walls the cache was built from
+    private Matrix4 bgTransform, identity;
     private OrthographicCamera camera;
     private Vector3 camPos;
     private GameScreen screen;
     private Level level;
+    private static final int MAX_INDEXED_CACHE_SIZE = 8191;    // SpriteCache limit when using indices
     private float viewportW, viewportH, mapW, mapH;
+    private int enemiesDrawn, enemiesCulled;   // enemy counts of the last draw
+    private IntArray visibleEnemies;        // enemies that may be in view, reused every draw
 
     //Assets
     private TextureRegion levelBG;
+    private int levelBGId;                  // level whose background is acquired, 0 for none
 
     /**
      * Constructor for renderer
@@ -35,6 +48,9 @@ public class Renderer implements Disposable{
         this.camera = camera;
         camPos = camera.position;
         batch = new SpriteBatch();
+        bgTransform = new Matrix4();
+        identity = new Matrix4();
+        visibleEnemies = new IntArray();
     }
 
     public void setGameScreen(GameScreen screen){
@@ -50,61 +66,156 @@ public class Renderer implements Disposable{
         mapW = level.mapWidth;
         mapH = level.mapHeight;
 
-        levelBG = AssetManager.levelBGs[game.currentLevel - 1];
+        // acquire before releasing so a page shared with the previous level stays loaded
+        levelBG = AssetManager.acquireLevelBG(game.currentLevel);
+        if (levelBGId != 0) { AssetManager.releaseLevelBG(levelBGId); }
+        levelBGId = game.currentLevel;
+        buildLevelCache();
+    }
+
+    /**
+     * Builds the static art of the level, the background and the walls, into a sprite cache so each draws with a
+     * single call no matter how many walls the level has.
+     */
+    private void buildLevelCache() {
+        cachedWallsVersion = level.wallsVersion;
+        int size = level.wallCount + 1;
+        if (levelCache != null && size <= levelCacheCapacity) {
+            levelCache.clear();
+        } else {
+            if (levelCache != null) { levelCache.dispose(); }
+            // headroom so streaming a few more walls in does not recreate the cache
+            levelCacheCapacity = Math.max(size, levelCacheCapacity * 2);
+            levelCache = new SpriteCache(levelCacheCapacity, levelCacheCapacity <= MAX_INDEXED_CACHE_SIZE);
+        }
+        levelCache.beginCache();
+        // background is cached at the origin and moved for the parallax effect when drawn
+        levelCache.add(levelBG, 0, 0, mapW / 2, mapH / 2);
+        bgCacheId = levelCache.endCache();
+        levelCache.beginCache();
+        if (AssetManager.wall != null) {
+            for (int i = 0; i < level.wallCount; i++) {
+                GameRectangle wall = level.walls[i];
+                levelCache.add(AssetManager.wall, wall.getX(), wall.getY(), wall.getWidth(), wall.getHeight());
+            }
+        }
+        wallCacheId = levelCache.endCache();
     }
 
     /**
      * Draws all the game elements on the screen in their respective positions
      * @param gameTime amount of time that has passed in game
+     * @param alpha progress between the last two simulation ticks, positions are interpolated by it
      */
-    public void draw(float gameTime){
+    public void draw(float gameTime, float alpha){
+        FrameProfiler profiler = screen.profiler;
+        profiler.begin(FrameProfiler.RENDER);
         clear();
+        drawLevel();
         batch.begin();
-        drawBG();
-        switch (screen.playerState){
+        switch (screen.world.getPlayerState()){
             case FROZEN:
-                drawPlayer(AssetManager.playerFrozenAnimation.getKeyFrame(gameTime));
-                drawEnemies(gameTime);
+                drawPlayer(AssetManager.playerFrozenAnimation.getKeyFrame(gameTime), alpha);
+                drawEnemies(gameTime, alpha);
                 break;
             case MOVING:
-                drawPlayer(AssetManager.playerMovingAnimation.getKeyFrame(gameTime));
-                drawEnemies(gameTime);
+                drawPlayer(AssetManager.playerMovingAnimation.getKeyFrame(gameTime), alpha);
+                drawEnemies(gameTime, alpha);
                 break;
         }
         batch.end();
+        profiler.end(FrameProfiler.RENDER);
+        profiler.begin(FrameProfiler.STAGE);
         game.stage.draw(); //draw UI
+        profiler.end(FrameProfiler.STAGE);
+        if (profiler.isOverlayVisible()) { drawProfilerOverlay(profiler); }
+    }
+
+    /**
+     * Draws the frame timings in the top left corner, over the UI.
+     * @param profiler the profiler
+     */
+    private void drawProfilerOverlay(FrameProfiler profiler) {
+        Batch uiBatch = game.stage.getBatch();  // still set up for the stage's camera
+        uiBatch.begin();
+        AssetManager.font.draw(uiBatch, profiler.getOverlayText(), 4f, game.stage.getHeight() - 4f);
+        uiBatch.end();
     }
 
     /**
-     * Draws the level background with a parallax effect
+     * Draws the level background with a parallax effect, then the walls.
      */
-    private void drawBG(){
-        batch.draw(levelBG, camPos.x / 2 + viewportW / 2 * (camPos.x - mapW / 2) / (mapW - viewportW),
-                camPos.y / 2 + viewportH / 2 * (camPos.y - mapH / 2) / (mapH - viewportH),
-                0, 0, mapW / 2, mapH / 2, 1f, 1f, 0);
+    private void drawLevel(){
+        if (level.wallsVersion != cachedWallsVersion) { buildLevelCache(); }  // walls were streamed in or out
+        levelCache.setProjectionMatrix(camera.combined);
+        levelCache.setTransformMatrix(bgTransform.setToTranslation(
+                camPos.x / 2 + viewportW / 2 * (camPos.x - mapW / 2) / (mapW - viewportW),
+                camPos.y / 2 + viewportH / 2 * (camPos.y - mapH / 2) / (mapH - viewportH), 0));
+        levelCache.begin();
+        levelCache.draw(bgCacheId);
+        levelCache.end();
+        levelCache.setTransformMatrix(identity);
+        levelCache.begin();
+        levelCache.draw(wallCacheId);
+        levelCache.end();
     }
 
     /**
      * Draws the player.
      * @param keyframe the current animation keyframe of the player
+     * @param alpha interpolation between the last two simulation ticks
      */
-    private void drawPlayer(TextureRegion keyframe) {
-        batch.draw(keyframe, screen.player.getX(), screen.player.getY(), screen.player.getWidth()/2,
+    private void drawPlayer(TextureRegion keyframe, float alpha) {
+        batch.draw(keyframe, screen.player.getDrawX(alpha), screen.player.getDrawY(alpha), screen.player.getWidth()/2,
                 screen.player.getHeight()/2, screen.player.getWidth(), screen.player.getHeight(),
                 1.5f, 2f, screen.player.getRotation());
     }
 
     /**
-     * Draws the enemies.
-     * @param time
+     * Draws the enemies in the camera's view. The level's trajectory index finds the enemies that may be in view
+     * between the last two simulation ticks; of those, enemies entirely outside of the view are skipped.
+     * @param time time the animations are at
+     * @param alpha interpolation between the last two simulation ticks
      */
-    private void drawEnemies(float time) {
-        for (Enemy enemy : level.enemies) {
-            batch.draw(AssetManager.enemyAnimations[enemy.getAnimationId()].getKeyFrame(time),
-                    enemy.getX(), enemy.getY(), enemy.getWidth(), enemy.getHeight());
+    private void drawEnemies(float time, float alpha) {
+        EnemyStore enemies = level.enemies;
+        float left = camPos.x - viewportW / 2, right = camPos.x + viewportW / 2;
+        float bottom = camPos.y - viewportH / 2, top = camPos.y + viewportH / 2;
+        enemiesDrawn = enemiesCulled = 0;
+        // enemies are grouped by animation, so each keyframe is only resolved when a new group starts
+        int animationId = -1;
+        TextureRegion keyFrame = null;
+        float worldTime = screen.world.getTime();
+        visibleEnemies.clear();
+        level.trajectories.query(left, bottom, right, top, worldTime - screen.getTickLength(), worldTime,
+                visibleEnemies);
+        EnemyStore.sortIndices(visibleEnemies.items, visibleEnemies.size);  // back into animation groups
+        for (int j = 0; j < visibleEnemies.size; j++) {
+            int i = visibleEnemies.items[j];
+            float x = enemies.getDrawX(i, alpha), y = enemies.getDrawY(i, alpha);
+            if (x > right || x + enemies.width[i] < left || y > top || y + enemies.height[i] < bottom) { continue; }
+            enemiesDrawn++;
+            if (enemies.animationId[i] != animationId) {
+                animationId = enemies.animationId[i];
+                keyFrame = AssetManager.getEnemyAnimation(animationId).getKeyFrame(time);
+            }
+            batch.draw(keyFrame, x, y, enemies.width[i], enemies.height[i]);
         }
+        enemiesCulled = enemies.size - enemiesDrawn;
     }
 
+    /**
+     * Gets the number of enemies drawn by the last draw.
+     * @return enemies drawn
+     */
+    public int getEnemiesDrawn() { return enemiesDrawn; }
+
+    /**
+     * Gets the number of enemies skipped by the last draw for being outside the camera's view.
+     * @return enemies culled
+     */
+    public int getEnemiesCulled() { return enemiesCulled; }
+
     /**
      * Clears the screen (OpenGL) and resets the camera and spritebatch in preparation for a new draw.
      */
@@ -127,5 +238,8 @@ public class Renderer implements Disposable{
      */
     public void dispose() {
         batch.dispose();
+        if (levelCache != null) { levelCache.dispose(); }
+        if (levelBGId != 0) { AssetManager.releaseLevelBG(levelBGId); }
+        levelBGId = 0;
     }
 }
@@ -0,0 +1,113 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Runs a recorded play session, see {@link InputRecording}, through the simulation without a display. Frames are
+ * simulated back to back, so a replay runs as fast as the CPU allows. Given the same level the results are bit
+ * identical to the recorded session, which is checked against the checksum stored at its end.
+ */
+public class Replay {
+    private final ByteBuffer log;
+    private final int levelId;
+    private final float tickLength;
+    private final World world;
+    private final InputSampler input;
+    private final TickLoop loop;
+    private int frames, ticks;
+    private boolean verified;
+
+    /**
+     * Constructor reading a recording's header.
+     * @param recording the recording
+     */
+    public Replay(byte[] recording) {
+        log = ByteBuffer.wrap(recording).order(ByteOrder.LITTLE_ENDIAN);
+        if (log.getInt() != InputRecording.MAGIC || log.getShort() != InputRecording.VERSION) {
+            throw new GdxRuntimeException("Not a recording or recorded with a different version");
+        }
+        levelId = log.getInt();
+        tickLength = log.getFloat();
+        world = new World(new Player());
+        input = new InputSampler();
+        loop = new TickLoop(world, input);
+        loop.setTickLength(tickLength);
+    }
+
+    /**
+     * Gets the level the session was recorded in. The replay must be run on a level built from the same data.
+     * @return the level id
+     */
+    public int getLevelId() { return levelId; }
+
+    /**
+     * Runs the whole recording.
+     * @param level the recorded level, freshly built
+     * @return true if the world ended up exactly as in the recorded session
+     */
+    public boolean run(Level level) {
+        world.setLevel(level);
+        loop.reset();
+        while (log.hasRemaining()) {
+            byte type = log.get();
+            switch (type) {
+                case InputRecording.DOWN:
+                    input.touchDown(log.getFloat(), log.getFloat(), log.getFloat());
+                    break;
+                case InputRecording.DRAG:
+                    input.touchDragged(log.getFloat(), log.getFloat(), log.getFloat());
+                    break;
+                case InputRecording.UP:
+                    input.touchUp(log.getFloat());
+                    break;
+                case InputRecording.FRAME:
+                    ticks += loop.advance(log.getFloat());
+                    world.stream(log.getFloat(), log.getFloat());
+                    frames++;
+                    break;
+                case InputRecording.PAUSE:
+                    input.clear();
+                    world.setFrozen();
+                    break;
+                case InputRecording.RESTART:
+                    level.reset();
+                    world.setLevel(level);
+                    loop.reset();
+                    break;
+                case InputRecording.END:
+                    verified = log.getLong() == world.checksum();
+                    return verified;
+                default:
+                    throw new GdxRuntimeException("Corrupt recording, unknown record " + type);
+            }
+        }
+        return false;   // recording was cut off before its end
+    }
+
+    /**
+     * Gets the world the session was replayed in, to inspect its final state.
+     * @return the world
+     */
+    public World getWorld() { return world; }
+
+    /**
+     * Gets the number of frames replayed.
+     * @return frames
+     */
+    public int getFrames() { return frames; }
+
+    /**
+     * Gets the number of simulation ticks replayed.
+     * @return ticks
+     */
+    public int getTicks() { return ticks; }
+
+    /**
+     * Checks if the replay matched the recorded session.
+     * @return true if the checksums matched
+     */
+    public boolean isVerified() { return verified; }
+}
@@ -0,0 +1,39 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.files.FileHandle;
+
+/**
+ * Replays a recorded play session headless, see {@link Replay}, and reports how fast it ran and whether it matched
+ * the recording. Loads the recorded level and the enemy prototypes from an assets directory, so no Gdx application is
+ * needed. Runs from a plain main on the desktop JVM. Build tool only, excluded from the GWT build.
+ */
+public class ReplayRunner {
+
+    private ReplayRunner() {}
+
+    /**
+     * Runs a recording and prints ticks per second and the verification result. Exits with a non zero status if the
+     * replay did not match the recording.
+     * @param args the assets directory, then the recording, {@link GameScreen#REPLAY_FILE} if none
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: ReplayRunner <assets dir> [recording]");
+            System.exit(2);
+        }
+        FileHandle assets = new FileHandle(args[0]);
+        FileHandle recording = new FileHandle(args.length > 1 ? args[1] : GameScreen.REPLAY_FILE);
+        Replay replay = new Replay(recording.readBytes());
+        Level level = new Level(EnemyFactory.instantiate(assets.child("enemyPrototypes.json")));
+        level.build(LevelDefinition.load(assets, replay.getLevelId()));
+
+        long start = System.nanoTime();
+        boolean verified = replay.run(level);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("level " + replay.getLevelId() + ": " + replay.getFrames() + " frames, "
+                + replay.getTicks() + " ticks in " + seconds + " s, " + replay.getTicks() / seconds + " ticks/s");
+        System.out.println(verified ? "verified, the replay matches the recording"
+                : "NOT verified, the replay differs from the recording");
+        if (!verified) { System.exit(1); }
+    }
+}
@@ -0,0 +1,296 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Json;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Benchmarks the simulation's hot paths on synthetic levels from {@link LevelGenerator} and writes the results as csv,
+ * so runs can be compared between releases. Runs from a plain main on the desktop JVM, no GL context needed. Build
+ * tool only, excluded from the GWT build.
+ * <p>
+ * Each case is warmed up, then run until the measuring time is up. Columns: benchmark, parameter, operations,
+ * nanoseconds per operation, and a count per operation specific to the benchmark, e.g. active enemies per step.
+ * <p>
+ * This is a plain timer, not a JMH harness. Every case runs in the same JVM, so earlier cases shape the JIT profile
+ * of later ones, and results are only folded into a sink rather than consumed by a blackhole. Compare runs of the
+ * same build on the same machine, and treat small differences, and absolute numbers, with caution.
+ */
+public class SimulationBenchmark {
+    public static final String DEFAULT_OUTPUT = "benchmark.csv";
+    private static final long WARMUP_NANOS = 500000000L;
+    private static final long MEASURE_NANOS = 1000000000L;
+    private static final int[] SIZES = {10, 1000, 100000};     // enemies and walls of the synthetic levels
+    private static final int PATTERNS = 16;                     // move patterns shared by a level's enemies
+    private static final long SEED = 1L;
+    private static final float STEP = 1f / 60f;                 // time simulated per step (s)
+    private static final int BATCH = 1000;                      // operations per run of the cheap cases
+    private static final float PLAYER_SPEED = 25f;              // player's max speed (units/s)
+    private static final int PATTERN_BUCKETS = 32;              // time buckets of the baked patterns, over their segments
+
+    private final StringBuilder csv;
+    private final EnemyFactory enemyFactory;
+    private long sink;                      // results are folded in so the work can not be optimized away
+
+    /**
+     * A benchmarked operation, or a batch of them.
+     */
+    private interface Case {
+        /**
+         * Runs the operation once.
+         * @return the count reported for the operation, see the class comment
+         */
+        long run();
+    }
+
+    /**
+     * Runs every benchmark and writes the results.
+     * @param args path of the csv file to write, {@link #DEFAULT_OUTPUT} if none
+     */
+    public static void main(String[] args) {
+        SimulationBenchmark benchmark = new SimulationBenchmark();
+        benchmark.runAll();
+        String path = args.length > 0 ? args[0] : DEFAULT_OUTPUT;
+        new FileHandle(path).writeString(benchmark.getCsv(), false);
+        System.out.print(benchmark.getCsv());
+    }
+
+    /**
+     * Constructor for the benchmark. Enemies all use a single prototype, so no asset files are read.
+     */
+    public SimulationBenchmark() {
+        csv = new StringBuilder("benchmark,parameter,operations,ns_per_op,count_per_op\n");
+        EnemyPrototype prototype = new EnemyPrototype();
+        prototype.width = prototype.height = 2f;
+        ArrayList<EnemyPrototype> prototypes = new ArrayList<EnemyPrototype>();
+        prototypes.add(prototype);
+        enemyFactory = new EnemyFactory(prototypes);
+    }
+
+    /**
+     * Runs every benchmark.
+     */
+    public void runAll() {
+        benchmarkMovePatterns();
+        benchmarkCollides();
+        benchmarkWallSweep();
+        benchmarkWorldStep();
+        benchmarkLevelLoading();
+    }
+
+    /**
+     * Gets the results so far.
+     * @return csv rows, with a header
+     */
+    public String getCsv() { return csv.toString(); }
+
+    /**
+     * {@link MovePattern#update} for each loop mode, finding the segment by binary search and by the baked time
+     * bucket lookup.
+     */
+    private void benchmarkMovePatterns() {
+        String[] names = {"once", "circular", "pingpong"};
+        int[] modes = {MovePattern.LOOP_ONCE, MovePattern.LOOP_CIRCULAR, MovePattern.LOOP_PINGPONG};
+        for (int m = 0; m < modes.length; m++) {
+            measure("move_pattern_update", names[m], BATCH, updateCase(createPattern(modes[m], 0)));
+            measure("move_pattern_update", names[m] + "_baked", BATCH,
+                    updateCase(createPattern(modes[m], PATTERN_BUCKETS)));
+        }
+    }
+
+    /**
+     * Creates a pattern of random points like the generated levels'.
+     * @param loop loop mode, see {@link MovePatternData#loopMode}
+     * @param buckets time buckets, 0 for none
+     * @return the pattern
+     */
+    private MovePattern createPattern(int loop, int buckets) {
+        RandomXS128 random = new RandomXS128(SEED);
+        float[] pointsX = new float[8], pointsY = new float[8];
+        for (int p = 1; p < pointsX.length; p++) {
+            pointsX[p] = random.nextFloat() * 16 - 8;
+            pointsY[p] = random.nextFloat() * 16 - 8;
+        }
+        return new MovePattern(4f, loop, pointsX, pointsY, buckets);
+    }
+
+    /**
+     * Updates a pattern at evenly advancing times within its duration, {@link #BATCH} times per run.
+     */
+    private Case updateCase(final MovePattern pattern) {
+        return new Case() {
+            private final Vector2 translation = new Vector2();
+            private float time;
+
+            @Override
+            public long run() {
+                for (int k = 0; k < BATCH; k++) {
+                    time += STEP;
+                    if (time >= pattern.getDuration()) { time -= pattern.getDuration(); }
+                    pattern.update(time, translation);
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * {@link GameRectangle#collides} of a player sized box against a spread of enemy sized boxes.
+     */
+    private void benchmarkCollides() {
+        RandomXS128 random = new RandomXS128(SEED);
+        final GameRectangle[] boxes = new GameRectangle[BATCH];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = new GameRectangle(random.nextFloat() * 16, random.nextFloat() * 16, 2, 2);
+        }
+        final GameRectangle player = new GameRectangle(7, 7, 3, 3);
+        measure("collides", "", BATCH, new Case() {
+            @Override
+            public long run() {
+                long hits = 0;
+                for (GameRectangle box : boxes) {
+                    if (player.collides(box)) { hits++; }
+                }
+                return hits;
+            }
+        });
+    }
+
+    /**
+     * A frame's player moves against the walls, {@link WallGrid#sweepX} and {@link WallGrid#sweepY}, compared with
+     * sweeping against every wall in turn, for each wall count. The count is wall checks per frame, which should
+     * stay flat with the grid as the wall count grows.
+     */
+    private void benchmarkWallSweep() {
+        for (int size : SIZES) {
+            Level level = new Level(enemyFactory);
+            level.build(LevelGenerator.generate(SEED, 0, size, PATTERNS));
+            measure("wall_sweep", size + "_grid", 1, sweepCase(level, true));
+            measure("wall_sweep", size + "_linear", 1, sweepCase(level, false));
+        }
+    }
+
+    /**
+     * Moves a player sized box by a frame's worth of max speed from random points of the level.
+     * @param grid true to use the level's wall grid, false to check every wall
+     */
+    private Case sweepCase(final Level level, final boolean grid) {
+        final RandomXS128 random = new RandomXS128(SEED);
+        final GameRectangle player = new GameRectangle(3, 3);
+        final float distance = PLAYER_SPEED * STEP;
+        return new Case() {
+            @Override
+            public long run() {
+                player.setPosition(random.nextFloat() * (level.mapWidth - 3), random.nextFloat() * (level.mapHeight - 3));
+                float dx = random.nextBoolean() ? distance : -distance;
+                float dy = random.nextBoolean() ? distance : -distance;
+                if (grid) {
+                    player.translateX(level.wallGrid.sweepX(player, dx));
+                    long checks = level.wallGrid.getChecks();
+                    player.translateY(level.wallGrid.sweepY(player, dy));
+                    return checks + level.wallGrid.getChecks();
+                }
+                for (int w = 0; w < level.wallCount; w++) { dx = player.sweepX(level.walls[w], dx); }
+                player.translateX(dx);
+                for (int w = 0; w < level.wallCount; w++) { dy = player.sweepY(level.walls[w], dy); }
+                player.translateY(dy);
+                return level.wallCount * 2;
+            }
+        };
+    }
+
+    /**
+     * {@link World#step} on synthetic levels of each size, with the default active radius and with every enemy
+     * active. The player keeps moving, turning now and then.
+     */
+    private void benchmarkWorldStep() {
+        for (int size : SIZES) {
+            LevelData data = LevelGenerator.generate(SEED, size, size, PATTERNS);
+            measure("world_step", Integer.toString(size), 1, stepCase(data, World.DEFAULT_ACTIVE_RADIUS));
+            measure("world_step", size + "_all_active", 1, stepCase(data, Math.max(data.mapW, data.mapH)));
+        }
+    }
+
+    private Case stepCase(LevelData data, float activeRadius) {
+        Level level = new Level(enemyFactory);
+        level.build(data);
+        final World world = new World(new Player());
+        world.setLevel(level);
+        world.setActiveRadius(activeRadius);
+        world.setMoving();
+        return new Case() {
+            private int steps;
+
+            @Override
+            public long run() {
+                if (steps++ % 120 == 0) { world.player.setDirection(steps * 0.7f % MathUtils.PI2, 1f); }
+                world.savePositions();
+                world.step(STEP);
+                return world.getActiveEnemies().size;
+            }
+        };
+    }
+
+    /**
+     * Building a level from json text and from its compiled binary, for each size.
+     */
+    private void benchmarkLevelLoading() {
+        for (int size : SIZES) {
+            LevelData data = LevelGenerator.generate(SEED, size, size, PATTERNS);
+            final String json = new Json().toJson(data);
+            final byte[] compiled = LevelCompiler.compile(data);
+            measure("level_load_json", Integer.toString(size), 1, new Case() {
+                @Override
+                public long run() {
+                    Level level = new Level(enemyFactory);
+                    level.build(new Json().fromJson(LevelData.class, json));
+                    return level.enemies.size;
+                }
+            });
+            measure("level_load_binary", Integer.toString(size), 1, new Case() {
+                @Override
+                public long run() {
+                    Level level = new Level(enemyFactory);
+                    level.build(ByteBuffer.wrap(compiled));
+                    return level.enemies.size;
+                }
+            });
+        }
+    }
+
+    /**
+     * Warms a case up, then runs it until the measuring time is up, at least once, and adds its row.
+     * @param benchmark name of the benchmark
+     * @param parameter the case within the benchmark
+     * @param operations operations per run of the case
+     * @param benchmarkCase the case
+     */
+    private void measure(String benchmark, String parameter, int operations, Case benchmarkCase) {
+        long end = System.nanoTime() + WARMUP_NANOS;
+        do { sink += benchmarkCase.run(); } while (System.nanoTime() < end);
+        long runs = 0, count = 0;
+        long start = System.nanoTime();
+        end = start + MEASURE_NANOS;
+        long now;
+        do {
+            count += benchmarkCase.run();
+            runs++;
+            now = System.nanoTime();
+        } while (now < end);
+        sink += count;
+        long ops = runs * operations;
+        csv.append(benchmark).append(',').append(parameter).append(',').append(ops).append(',')
+                .append((double) (now - start) / ops).append(',').append((double) count / ops).append('\n');
+    }
+
+    /**
+     * Gets the sum of all results, only so the work done can not be optimized away.
+     * @return the sum
+     */
+    public long getSink() { return sink; }
+}
@@ -138,10 +138,10 @@ public class StartScreen implements Screen {
      * Starts the game by switching to the game screen.
      */
     public void startGame() {
-        Gdx.app.log(TAG, "Switching to game screen...");
-        game.gameScreen.loadLevel(game.currentLevel);
+        Gdx.app.log(TAG, "Switching to loading screen...");
+        game.loadingScreen.load(game.currentLevel);
         setLevelLoaderVisible(false);
-        game.setScreen(game.gameScreen);
+        game.setScreen(game.loadingScreen);
     }
 
     /**
@@ -25,6 +25,7 @@ public class SwitchStateGame extends Game{
 
     public StartScreen startScreen;
     public GameScreen gameScreen;
+    public LoadingScreen loadingScreen;
     public Renderer renderer;
     public Stage stage;
     public OrthographicCamera camera;
@@ -36,7 +37,6 @@ public class SwitchStateGame extends Game{
         Gdx.app.setLogLevel(Application.LOG_DEBUG);
         Gdx.app.log(TAG, "Game started.");
         Gdx.app.debug(TAG, "Loading assets...");
-        // TODO loading screen
         Json json = new Json();
 
         AssetManager.load();
@@ -50,6 +50,7 @@ public class SwitchStateGame extends Game{
         renderer = new Renderer(this, camera);
         startScreen = new StartScreen(this);
         gameScreen = new GameScreen(this);
+        loadingScreen = new LoadingScreen(this);
         renderer.setGameScreen(gameScreen);
 
         Gdx.app.log(TAG,"Initializing start screen...");
@@ -72,6 +73,7 @@ public class SwitchStateGame extends Game{
         Gdx.app.log(TAG, "Saved Progress.");
 
         renderer.dispose();
+        loadingScreen.dispose();
         stage.dispose();
 
         Gdx.app.debug(TAG, "Disposing assets...");
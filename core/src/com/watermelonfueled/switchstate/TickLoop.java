@@ -0,0 +1,84 @@
+package com.watermelonfueled.switchstate;
+
+/**
+ * Advances a {@link World} in fixed ticks from variable frame times. Frame time left over is carried to the next
+ * frame and used to interpolate between the last two ticks when drawing. Input is applied once per tick.
+ * Does not depend on Gdx application state, so recorded sessions can be replayed headless, see {@link Replay}.
+ */
+public class TickLoop {
+    public static final float DEFAULT_TICK_RATE = 60f;     // simulation ticks per second
+    public static final int MAX_TICKS_PER_FRAME = 5;       // max catch up ticks after a slow frame
+
+    private final World world;
+    private final InputSampler input;
+    private float tickLength;                               // time (s) simulated per tick
+    private float accumulator;                              // frame time not yet simulated
+    private float alpha;                                    // progress between the last two ticks, for interpolation
+
+    /**
+     * Constructor for the loop.
+     * @param world the world to advance
+     * @param input input applied to the world each tick
+     */
+    public TickLoop(World world, InputSampler input) {
+        this.world = world;
+        this.input = input;
+        setTickRate(DEFAULT_TICK_RATE);
+    }
+
+    /**
+     * Advances the world by a frame's time, in as many whole ticks as fit.
+     * @param delta time (s) since last frame
+     * @return number of ticks simulated
+     */
+    public int advance(float delta) {
+        accumulator += delta;
+        int ticks = 0;
+        while (accumulator >= tickLength && ticks < MAX_TICKS_PER_FRAME) {
+            input.apply(world);
+            world.savePositions();
+            world.step(tickLength);
+            accumulator -= tickLength;
+            ticks++;
+        }
+        // drop time that could not be caught up on instead of spiralling
+        if (accumulator > tickLength) { accumulator = tickLength; }
+        alpha = accumulator / tickLength;
+        return ticks;
+    }
+
+    /**
+     * Drops frame time not yet simulated, e.g. when a level starts.
+     */
+    public void reset() {
+        accumulator = alpha = 0;
+    }
+
+    /**
+     * Sets how many times per second the game is simulated, independent of the frame rate.
+     * @param ticksPerSecond simulation rate
+     */
+    public void setTickRate(float ticksPerSecond) {
+        tickLength = 1f / ticksPerSecond;
+    }
+
+    /**
+     * Sets the time simulated per tick.
+     * @param tickLength tick length (s)
+     */
+    public void setTickLength(float tickLength) {
+        this.tickLength = tickLength;
+    }
+
+    /**
+     * Gets the time simulated per tick.
+     * @return tick length (s)
+     */
+    public float getTickLength() { return tickLength; }
+
+    /**
+     * Gets the progress between the last two ticks after the last advance.
+     * @return 0 at the previous tick to 1 at the latest tick
+     */
+    public float getAlpha() { return alpha; }
+}
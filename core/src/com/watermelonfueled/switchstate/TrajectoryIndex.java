@@ -0,0 +1,449 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Answers which enemies overlap a rectangle at a time, or during a time interval, without touching every enemy.
+ * <p>
+ * A moving enemy's move time always equals the level's time, it starts at 0 with the level, streamed enemies are
+ * loaded at the level's time and dormant ones are woken to it, so its position at any time is its start point plus
+ * its pattern's translation at that time. Each pattern's duration is cut into time slices and the bounding box of its
+ * translations during each slice is calculated once. Enemies stopped when the index was built are grouped by their
+ * position, ones stopped later must be reported with {@link #stopped(int)}.
+ * <p>
+ * Patterns are sorted into reach classes by how many cells their enemies can get from their start cell, rounded up
+ * to one less than a power of two. Each class has a grid of its own in which enemies are bucketed by the cell of their
+ * start point and their pattern, and only non-empty buckets are stored, sorted by cell. A query visits each class's
+ * cells within the class's reach of the rectangle, and in them only the buckets of patterns whose translation box at
+ * the queried time can reach it. The number of classes grows with the log of the longest path, not with the number of
+ * patterns. Memory is three ints per enemy, two per non-empty bucket and one per cell of each class in use.
+ */
+public class TrajectoryIndex {
+    public static final float DEFAULT_CELL_SIZE = 64f;     // world units per cell
+    public static final int SLICES = 16;                    // time slices per pattern duration
+    private static final float PADDING = 0.01f;             // slice boxes are grown by this to absorb rounding
+    private static final int CLASSES = 32;                  // reach classes, by the bit length of the reach in cells
+
+    private EnemyStore enemies;
+    private MovePattern[] patterns;         // patterns the slice boxes were calculated for
+    private int groups;                     // one per pattern, plus the last for stopped enemies
+    private float[] sliceBoxes;             // min x, min y, max x, max y per pattern slice, SLICES+1 per pattern
+    private float[] maxWidth, maxHeight;    // largest enemy of each group
+    private float originX, originY;         // bottom left corner of the grid
+    private float cellSize, invCellSize;
+    private int cols, rows;
+
+    private final int[] classReach;         // cells the enemies of each class in use reach beyond their start cell
+    private final int[] classSlot;          // index into classReach of each reach class, -1 if not in use
+    private int classCount;                 // reach classes in use
+    private int[] groupClass;               // class of each group, index into classReach
+    private int[] cellBuckets;              // first bucket of each cell of each class, classCount*cols*rows+1 long
+    private int[] bucketGroup;              // group of each non-empty bucket, buckets sorted by class, cell and group
+    private int[] bucketStart;              // index into bucketEnemies of each bucket's first enemy, buckets+1 long
+    private int[] bucketEnemies;            // enemy indices by bucket
+    private int[] keys, order, groupCount;  // class and cell of each enemy, enemies by group, used while building
+
+    private final IntArray lateStopped;     // enemies stopped after the index was built
+    private final Vector2 translation;
+    private float[] groupBoxes;             // translation box of each group over the queried time, 4 per group
+    private int[] groupCells;               // min col, min row, max col, max row of start cells reaching the query
+    private int[] groupStamp;               // last query each group's box was calculated for
+    private int stamp;
+    private int checks;                     // enemies checked by the last query
+
+    /**
+     * Constructor for an empty index, see {@link #rebuild(EnemyStore, float, float, float, float)}.
+     * @param cellSize size of each square cell
+     */
+    public TrajectoryIndex(float cellSize) {
+        this.cellSize = cellSize;
+        invCellSize = 1f / cellSize;
+        classReach = new int[CLASSES];
+        classSlot = new int[CLASSES];
+        lateStopped = new IntArray();
+        translation = new Vector2();
+    }
+
+    /**
+     * Rebuilds the index over the enemies in an area, reusing its arrays when they are large enough. Slice boxes are
+     * only calculated again if the enemies use other patterns. Enemies starting outside the area are clamped to its
+     * border cells.
+     * @param enemies the enemies
+     * @param originX x coordinate of the area's bottom left corner
+     * @param originY y coordinate of the area's bottom left corner
+     * @param width width of the area
+     * @param height height of the area
+     */
+    public void rebuild(EnemyStore enemies, float originX, float originY, float width, float height) {
+        this.enemies = enemies;
+        this.originX = originX;
+        this.originY = originY;
+        cols = Math.max(1, MathUtils.ceil(width * invCellSize));
+        rows = Math.max(1, MathUtils.ceil(height * invCellSize));
+        if (patterns != enemies.patterns) { calculateSlices(enemies.patterns); }
+        lateStopped.clear();
+        lateStopped.ensureCapacity(enemies.size);   // an enemy stops once at most, so stopping never allocates
+        int count = enemies.size;
+        if (keys == null || keys.length < count) {
+            keys = new int[count];
+            order = new int[count];
+            bucketEnemies = new int[count];
+        }
+
+        for (int g = 0; g < groups; g++) { maxWidth[g] = maxHeight[g] = 0; }
+        for (int g = 0; g <= groups; g++) { groupCount[g] = 0; }
+        for (int i = 0; i < count; i++) {
+            int g = group(i);
+            maxWidth[g] = Math.max(maxWidth[g], enemies.width[i]);
+            maxHeight[g] = Math.max(maxHeight[g], enemies.height[i]);
+            groupCount[g + 1]++;
+        }
+        assignClasses();
+
+        // enemies ordered by group, then stably by class and cell, so each cell's buckets are runs of one group
+        for (int g = 1; g <= groups; g++) { groupCount[g] += groupCount[g - 1]; }
+        for (int i = 0; i < count; i++) { order[groupCount[group(i)]++] = i; }
+        int keyCount = classCount * cols * rows;
+        if (cellBuckets == null || cellBuckets.length < keyCount + 1) {
+            cellBuckets = new int[keyCount + 1];
+        } else {
+            for (int k = 0; k <= keyCount; k++) { cellBuckets[k] = 0; }
+        }
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(i, group(i));
+            cellBuckets[keys[i] + 1]++;
+        }
+        for (int k = 1; k <= keyCount; k++) { cellBuckets[k] += cellBuckets[k - 1]; }
+        for (int j = 0; j < count; j++) {
+            int i = order[j];
+            bucketEnemies[cellBuckets[keys[i]]++] = i;  // leaves each key's start at the next key's
+        }
+
+        int buckets = 0;
+        for (int j = 0; j < count; j++) {
+            if (j == 0 || startsBucket(j)) { buckets++; }
+        }
+        if (bucketGroup == null || bucketGroup.length < buckets) {
+            bucketGroup = new int[buckets];
+            bucketStart = new int[buckets + 1];
+        }
+        int from = 0, b = 0;
+        for (int k = 0; k < keyCount; k++) {
+            int to = cellBuckets[k];
+            cellBuckets[k] = b;
+            for (int j = from; j < to; j++) {
+                if (j == from || startsBucket(j)) {
+                    bucketGroup[b] = group(bucketEnemies[j]);
+                    bucketStart[b++] = j;
+                }
+            }
+            from = to;
+        }
+        cellBuckets[keyCount] = b;
+        bucketStart[b] = count;
+    }
+
+    /**
+     * Checks if an enemy in bucket order is in another bucket than the one before it.
+     * @param j position in bucketEnemies, more than 0
+     */
+    private boolean startsBucket(int j) {
+        int i = bucketEnemies[j], previous = bucketEnemies[j - 1];
+        return keys[i] != keys[previous] || group(i) != group(previous);
+    }
+
+    /**
+     * Sorts the groups holding enemies into reach classes by how many cells their enemies can get from their start
+     * cell. Must be called after the largest enemy of each group is found.
+     */
+    private void assignClasses() {
+        for (int c = 0; c < CLASSES; c++) { classSlot[c] = -1; }
+        classCount = 0;
+        for (int g = 0; g < groups; g++) {
+            if (groupCount[g + 1] == 0) { continue; }
+            float reach = Math.max(maxWidth[g], maxHeight[g]);
+            if (g < patterns.length) {
+                MovePattern pattern = patterns[g];
+                reach = Math.max(Math.max(-pattern.getMinX(), -pattern.getMinY()),
+                        Math.max(pattern.getMaxX() + maxWidth[g], pattern.getMaxY() + maxHeight[g])) + PADDING;
+            }
+            int cells = MathUtils.ceil(reach * invCellSize);
+            int c = 32 - Integer.numberOfLeadingZeros(cells);
+            if (classSlot[c] < 0) {
+                classSlot[c] = classCount;
+                classReach[classCount++] = (int) Math.min((1L << c) - 1, cols + rows);
+            }
+            groupClass[g] = classSlot[c];
+        }
+    }
+
+    /**
+     * Calculates the translation box of each time slice of each pattern. The extra slice after the last holds where
+     * non-looping patterns stop, or the whole path for looping ones.
+     * @param patterns the patterns
+     */
+    private void calculateSlices(MovePattern[] patterns) {
+        this.patterns = patterns;
+        groups = patterns.length + 1;
+        maxWidth = new float[groups];
+        maxHeight = new float[groups];
+        groupClass = new int[groups];
+        groupCount = new int[groups + 1];
+        groupBoxes = new float[groups * 4];
+        groupCells = new int[groups * 4];
+        groupStamp = new int[groups];
+        stamp = 0;
+        sliceBoxes = new float[patterns.length * (SLICES + 1) * 4];
+        for (int p = 0; p < patterns.length; p++) {
+            MovePattern pattern = patterns[p];
+            float duration = pattern.getDuration();
+            int offset = p * (SLICES + 1) * 4;
+            for (int s = 0; s < SLICES; s++, offset += 4) {
+                pattern.getTranslationBounds(s * duration / SLICES, (s + 1) * duration / SLICES, translation,
+                        sliceBoxes, offset);
+                sliceBoxes[offset] -= PADDING;
+                sliceBoxes[offset + 1] -= PADDING;
+                sliceBoxes[offset + 2] += PADDING;
+                sliceBoxes[offset + 3] += PADDING;
+            }
+            if (pattern.isLoopOnce()) {
+                pattern.getEndPoint(translation);
+                sliceBoxes[offset] = sliceBoxes[offset + 2] = translation.x;
+                sliceBoxes[offset + 1] = sliceBoxes[offset + 3] = translation.y;
+            } else {
+                sliceBoxes[offset] = pattern.getMinX() - PADDING;
+                sliceBoxes[offset + 1] = pattern.getMinY() - PADDING;
+                sliceBoxes[offset + 2] = pattern.getMaxX() + PADDING;
+                sliceBoxes[offset + 3] = pattern.getMaxY() + PADDING;
+            }
+        }
+    }
+
+    /**
+     * Records that an enemy was stopped after the index was built, so queries look for it where it stopped.
+     * @param i index of the enemy
+     */
+    public void stopped(int i) {
+        lateStopped.add(i);
+    }
+
+    /**
+     * Finds the enemies overlapping a rectangle at a time. Positions are calculated from the patterns, so dormant
+     * enemies are found too.
+     * @param left x coordinate of the rectangle's left side
+     * @param bottom y coordinate of the rectangle's bottom side
+     * @param right x coordinate of the rectangle's right side
+     * @param top y coordinate of the rectangle's top side
+     * @param time time (s) since the level started
+     * @param out the enemies found are added to it, each once
+     * @return number of enemies found
+     */
+    public int query(float left, float bottom, float right, float top, float time, IntArray out) {
+        return query(left, bottom, right, top, time, time, true, out);
+    }
+
+    /**
+     * Finds the enemies that may overlap a rectangle at some point during a time interval. Enemies are checked
+     * against the translation box of the slices the interval covers, so a few found may not quite reach it.
+     * @param left x coordinate of the rectangle's left side
+     * @param bottom y coordinate of the rectangle's bottom side
+     * @param right x coordinate of the rectangle's right side
+     * @param top y coordinate of the rectangle's top side
+     * @param from start of the interval (s) since the level started
+     * @param to end of the interval, no earlier than from
+     * @param out the enemies found are added to it, each once
+     * @return number of enemies found
+     */
+    public int query(float left, float bottom, float right, float top, float from, float to, IntArray out) {
+        return query(left, bottom, right, top, from, to, false, out);
+    }
+
+    private int query(float left, float bottom, float right, float top, float from, float to, boolean exact,
+                      IntArray out) {
+        checks = 0;
+        nextStamp();
+        int found = 0;
+        int cells = cols * rows;
+        int minCol = col(left), maxCol = col(right), minRow = row(bottom), maxRow = row(top);
+        for (int k = 0; k < classCount; k++) {
+            int reach = classReach[k];
+            int fromCol = Math.max(minCol - reach, 0), toCol = Math.min(maxCol + reach, cols - 1);
+            int fromRow = Math.max(minRow - reach, 0), toRow = Math.min(maxRow + reach, rows - 1);
+            for (int r = fromRow; r <= toRow; r++) {
+                for (int c = fromCol; c <= toCol; c++) {
+                    int key = k * cells + r * cols + c;
+                    for (int b = cellBuckets[key], end = cellBuckets[key + 1]; b < end; b++) {
+                        int g = bucketGroup[b];
+                        if (groupStamp[g] != stamp) { groupCells(g, left, bottom, right, top, from, to); }
+                        // only cells holding start points whose translated box can reach the rectangle
+                        int box = g * 4;
+                        if (c < groupCells[box] || r < groupCells[box + 1]
+                                || c > groupCells[box + 2] || r > groupCells[box + 3]) { continue; }
+                        for (int j = bucketStart[b]; j < bucketStart[b + 1]; j++) {
+                            int i = bucketEnemies[j];
+                            checks++;
+                            if (overlaps(i, g, left, bottom, right, top, from, exact)) {
+                                out.add(i);
+                                found++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (int j = 0; j < lateStopped.size; j++) {
+            int i = lateStopped.items[j];
+            checks++;
+            if (!(enemies.x[i] + enemies.width[i] < left || enemies.x[i] > right
+                    || enemies.y[i] + enemies.height[i] < bottom || enemies.y[i] > top)) {
+                out.add(i);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks if an enemy of a group overlaps the rectangle, at the time if exact, otherwise anywhere in the group's
+     * current translation box.
+     */
+    private boolean overlaps(int i, int g, float left, float bottom, float right, float top, float time,
+                             boolean exact) {
+        if (g < patterns.length && enemies.pattern[i] != g) { return false; }    // stopped later, see lateStopped
+        float x = enemies.startX[i], y = enemies.startY[i];
+        if (g == patterns.length) {
+            x = enemies.x[i];
+            y = enemies.y[i];
+        } else if (exact) {
+            MovePattern pattern = patterns[g];
+            if (!pattern.update(time, translation)) { pattern.getEndPoint(translation); }
+            x += translation.x;
+            y += translation.y;
+        } else {
+            int box = g * 4;
+            return !(x + groupBoxes[box + 2] + enemies.width[i] < left || x + groupBoxes[box] > right
+                    || y + groupBoxes[box + 3] + enemies.height[i] < bottom || y + groupBoxes[box + 1] > top);
+        }
+        return !(x + enemies.width[i] < left || x > right || y + enemies.height[i] < bottom || y > top);
+    }
+
+    /**
+     * Calculates a group's translation box over the queried time, and the cells its enemies must start in to reach
+     * the rectangle.
+     */
+    private void groupCells(int g, float left, float bottom, float right, float top, float from, float to) {
+        groupStamp[g] = stamp;
+        int box = g * 4;
+        if (g < patterns.length) {
+            translationBounds(g, from, to, box);
+        } else {
+            groupBoxes[box] = groupBoxes[box + 1] = groupBoxes[box + 2] = groupBoxes[box + 3] = 0;
+        }
+        groupCells[box] = col(left - groupBoxes[box + 2] - maxWidth[g]);
+        groupCells[box + 1] = row(bottom - groupBoxes[box + 3] - maxHeight[g]);
+        groupCells[box + 2] = col(right - groupBoxes[box]);
+        groupCells[box + 3] = row(top - groupBoxes[box + 1]);
+    }
+
+    /**
+     * Sets a group's translation box to the union of its pattern's slice boxes over a time interval.
+     * @param p index of the pattern
+     * @param from start of the interval (s) since the level started
+     * @param to end of the interval
+     * @param box offset of the group's box in groupBoxes
+     */
+    private void translationBounds(int p, float from, float to, int box) {
+        MovePattern pattern = patterns[p];
+        float duration = pattern.getDuration();
+        int base = p * (SLICES + 1) * 4;
+        int first = slice(pattern, from), last = slice(pattern, to);
+        if (!pattern.isLoopOnce()) {
+            if (to - from >= duration) {
+                first = last = SLICES;  // the whole path
+            } else if (last < first) {
+                last += SLICES;         // wraps around the end of the loop
+            }
+        }
+        int offset = base + first * 4;
+        float minX = sliceBoxes[offset], minY = sliceBoxes[offset + 1];
+        float maxX = sliceBoxes[offset + 2], maxY = sliceBoxes[offset + 3];
+        for (int s = first + 1; s <= last; s++) {
+            // non-looping patterns end in the extra slice, looping ones wrap to the first
+            offset = base + (pattern.isLoopOnce() ? s : s % SLICES) * 4;
+            minX = Math.min(minX, sliceBoxes[offset]);
+            minY = Math.min(minY, sliceBoxes[offset + 1]);
+            maxX = Math.max(maxX, sliceBoxes[offset + 2]);
+            maxY = Math.max(maxY, sliceBoxes[offset + 3]);
+        }
+        groupBoxes[box] = minX;
+        groupBoxes[box + 1] = minY;
+        groupBoxes[box + 2] = maxX;
+        groupBoxes[box + 3] = maxY;
+    }
+
+    /**
+     * Gets the time slice a pattern is in at a time.
+     * @return slice index, SLICES once a non-looping pattern has ended
+     */
+    private int slice(MovePattern pattern, float time) {
+        float duration = pattern.getDuration();
+        if (pattern.isLoopOnce() && time > duration) { return SLICES; }
+        int s = (int) ((time % duration) / duration * SLICES);
+        return s < 0 ? 0 : (s >= SLICES ? SLICES - 1 : s);
+    }
+
+    /**
+     * Gets the group an enemy is bucketed in: its pattern, or the last group if it is stopped.
+     */
+    private int group(int i) {
+        return enemies.pattern[i] == EnemyStore.NO_PATTERN ? groups - 1 : enemies.pattern[i];
+    }
+
+    /**
+     * Gets the key of an enemy's cell: its group's reach class and the cell of its start point, or its position if
+     * stopped.
+     */
+    private int key(int i, int g) {
+        float x = g == groups - 1 ? enemies.x[i] : enemies.startX[i];
+        float y = g == groups - 1 ? enemies.y[i] : enemies.startY[i];
+        return groupClass[g] * cols * rows + row(y) * cols + col(x);
+    }
+
+    /**
+     * Advances the query stamp, clearing the stamps if it wraps around.
+     */
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            stamp = 1;
+            for (int g = 0; g < groupStamp.length; g++) { groupStamp[g] = 0; }
+        }
+    }
+
+    /**
+     * Gets the column of the cell containing the x coordinate, clamped to the grid.
+     * @param x x coordinate
+     * @return column index
+     */
+    private int col(float x) {
+        int c = MathUtils.floor((x - originX) * invCellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    /**
+     * Gets the row of the cell containing the y coordinate, clamped to the grid.
+     * @param y y coordinate
+     * @return row index
+     */
+    private int row(float y) {
+        int r = MathUtils.floor((y - originY) * invCellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    /**
+     * Gets the number of enemies checked by the last query.
+     * @return enemies checked
+     */
+    public int getChecks() { return checks; }
+}
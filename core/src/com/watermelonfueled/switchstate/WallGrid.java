@@ -0,0 +1,237 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Uniform grid over the walls of a {@link Level}. Each cell lists the walls overlapping it so collision checks only
+ * look at walls near the object being tested instead of every wall in the level.
+ */
+public class WallGrid {
+    public static final float DEFAULT_CELL_SIZE = 8f;  // world units per cell
+
+    private GameRectangle[] walls;
+    private int wallCount;          // walls in use, the array may be longer
+    private float originX, originY;     // bottom left corner of the grid
+    private float cellSize, invCellSize;
+    private int cols, rows;
+    private int[] cellStart;        // index into cellWalls of the first wall of each cell, cols*rows+1 long
+    private int[] cellWalls;        // wall indices grouped by cell
+    private int[] wallStamp;        // last query each wall was checked in, avoids checking a wall twice
+    private int[] fill;             // walls placed in each cell so far, used while building
+    private int stamp;
+    private int checks;             // wall checks done by the last query
+
+    /**
+     * Constructor builds the grid over the walls.
+     * @param walls the walls of the level
+     * @param mapWidth width of the level
+     * @param mapHeight height of the level
+     * @param cellSize size of each square cell
+     */
+    public WallGrid(GameRectangle[] walls, float mapWidth, float mapHeight, float cellSize) {
+        this(walls, 0, 0, mapWidth, mapHeight, cellSize);
+    }
+
+    /**
+     * Constructor builds the grid over the walls in part of a level. Walls outside the area are clamped to its
+     * border cells.
+     * @param walls the walls in the area
+     * @param originX x coordinate of the area's bottom left corner
+     * @param originY y coordinate of the area's bottom left corner
+     * @param width width of the area
+     * @param height height of the area
+     * @param cellSize size of each square cell
+     */
+    public WallGrid(GameRectangle[] walls, float originX, float originY, float width, float height, float cellSize) {
+        this.cellSize = cellSize;
+        invCellSize = 1f / cellSize;
+        rebuild(walls, walls.length, originX, originY, width, height);
+    }
+
+    /**
+     * Rebuilds the grid over other walls, reusing its arrays when they are large enough so streaming walls in and out
+     * does not allocate once the arrays have grown to fit. Walls outside the area are clamped to its border cells.
+     * @param walls the walls in the area
+     * @param wallCount number of walls used from the start of the array
+     * @param originX x coordinate of the area's bottom left corner
+     * @param originY y coordinate of the area's bottom left corner
+     * @param width width of the area
+     * @param height height of the area
+     */
+    public void rebuild(GameRectangle[] walls, int wallCount, float originX, float originY, float width,
+                        float height) {
+        this.walls = walls;
+        this.wallCount = wallCount;
+        this.originX = originX;
+        this.originY = originY;
+        cols = Math.max(1, MathUtils.ceil(width * invCellSize));
+        rows = Math.max(1, MathUtils.ceil(height * invCellSize));
+        if (wallStamp == null || wallStamp.length < wallCount) {
+            wallStamp = new int[wallCount];
+            stamp = 0;
+        }
+        build();
+    }
+
+    /**
+     * Fills the cells in two passes; counting walls per cell, then placing them.
+     */
+    private void build() {
+        int cells = cols * rows;
+        if (cellStart == null || cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+            fill = new int[cells];
+        } else {
+            for (int i = 0; i <= cells; i++) { cellStart[i] = 0; }
+            for (int i = 0; i < cells; i++) { fill[i] = 0; }
+        }
+        for (int w = 0; w < wallCount; w++) {
+            GameRectangle wall = walls[w];
+            int minCol = col(wall.getX()), maxCol = col(wall.getX() + wall.getWidth());
+            int minRow = row(wall.getY()), maxRow = row(wall.getY() + wall.getHeight());
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minCol; c <= maxCol; c++) {
+                    cellStart[r * cols + c + 1]++;
+                }
+            }
+        }
+        for (int i = 1; i < cellStart.length; i++) {
+            cellStart[i] += cellStart[i - 1];
+        }
+        if (cellWalls == null || cellWalls.length < cellStart[cells]) { cellWalls = new int[cellStart[cells]]; }
+        for (int w = 0; w < wallCount; w++) {
+            GameRectangle wall = walls[w];
+            int minCol = col(wall.getX()), maxCol = col(wall.getX() + wall.getWidth());
+            int minRow = row(wall.getY()), maxRow = row(wall.getY() + wall.getHeight());
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int c = minCol; c <= maxCol; c++) {
+                    int cell = r * cols + c;
+                    cellWalls[cellStart[cell] + fill[cell]++] = w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the object collides with any wall. Only the cells the object's bounds touch are checked.
+     * @param obj the object to check
+     * @return true if there is a collision, false otherwise
+     */
+    public boolean collides(GameRectangle obj) {
+        nextStamp();
+        checks = 0;
+        int minCol = col(obj.getX()), maxCol = col(obj.getX() + obj.getWidth());
+        int minRow = row(obj.getY()), maxRow = row(obj.getY() + obj.getHeight());
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int cell = r * cols + c;
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    int w = cellWalls[i];
+                    if (wallStamp[w] == stamp) { continue; }
+                    wallStamp[w] = stamp;
+                    checks++;
+                    if (walls[w].collides(obj)) { return true; }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds how far the object can move along the x axis before touching a wall. Only the cells covered by the
+     * object's path are checked, so fast moves can not pass through thin walls.
+     * @param obj the moving object
+     * @param dx intended movement along the x axis
+     * @return the movement allowed before contact
+     */
+    public float sweepX(GameRectangle obj, float dx) {
+        nextStamp();
+        checks = 0;
+        float x = obj.getX();
+        int minCol = col(Math.min(x, x + dx)), maxCol = col(Math.max(x, x + dx) + obj.getWidth());
+        int minRow = row(obj.getY()), maxRow = row(obj.getY() + obj.getHeight());
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int cell = r * cols + c;
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    int w = cellWalls[i];
+                    if (wallStamp[w] == stamp) { continue; }
+                    wallStamp[w] = stamp;
+                    checks++;
+                    dx = obj.sweepX(walls[w], dx);
+                }
+            }
+        }
+        return dx;
+    }
+
+    /**
+     * Finds how far the object can move along the y axis before touching a wall. Only the cells covered by the
+     * object's path are checked, so fast moves can not pass through thin walls.
+     * @param obj the moving object
+     * @param dy intended movement along the y axis
+     * @return the movement allowed before contact
+     */
+    public float sweepY(GameRectangle obj, float dy) {
+        nextStamp();
+        checks = 0;
+        float y = obj.getY();
+        int minCol = col(obj.getX()), maxCol = col(obj.getX() + obj.getWidth());
+        int minRow = row(Math.min(y, y + dy)), maxRow = row(Math.max(y, y + dy) + obj.getHeight());
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                int cell = r * cols + c;
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    int w = cellWalls[i];
+                    if (wallStamp[w] == stamp) { continue; }
+                    wallStamp[w] = stamp;
+                    checks++;
+                    dy = obj.sweepY(walls[w], dy);
+                }
+            }
+        }
+        return dy;
+    }
+
+    /**
+     * Advances the query stamp, clearing the stamps if it wraps around.
+     */
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            stamp = 1;
+            for (int i = 0; i < wallStamp.length; i++) { wallStamp[i] = 0; }
+        }
+    }
+
+    /**
+     * Gets the column of the cell containing the x coordinate, clamped to the grid.
+     * @param x x coordinate
+     * @return column index
+     */
+    private int col(float x) {
+        int c = MathUtils.floor((x - originX) * invCellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    /**
+     * Gets the row of the cell containing the y coordinate, clamped to the grid.
+     * @param y y coordinate
+     * @return row index
+     */
+    private int row(float y) {
+        int r = MathUtils.floor((y - originY) * invCellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    /**
+     * Gets the number of wall checks done by the last query. Stays flat as the level's wall count grows.
+     * @return wall checks of the last query
+     */
+    public int getChecks() { return checks; }
+
+    /**
+     * Gets the size of the grid cells.
+     * @return cell size
+     */
+    public float getCellSize() { return cellSize; }
+}
@@ -0,0 +1,341 @@
+package com.watermelonfueled.switchstate;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * The game simulation. Owns the player, the current {@link Level}'s enemies and walls and the player's frozen/moving
+ * state. Does not depend on Gdx application state (graphics, input, files) so it can be stepped from plain JVM code.
+ * <p>
+ * Only enemies whose path comes within the active radius of the player are simulated. The others are dormant: an
+ * enemy's position is a function of the level's time, so a dormant enemy is not moved at all and is set to where it
+ * should be when it becomes active again.
+ */
+public class World {
+    public static final float DEFAULT_ACTIVE_RADIUS = 64f;  // distance from the player within which enemies move
+    private static final float ACTIVE_SLACK = 8f;          // player movement before the active enemies are found again
+
+    public enum PlayerState { FROZEN, MOVING }
+    PlayerState playerState;
+
+    public final Player player;
+    private Level level;
+    private EnemyUpdater enemyUpdater;    // moves the enemies if set, otherwise they are moved sequentially
+    private FrameProfiler profiler;         // times the phases of each step if set
+
+    public float frozenTime, frozenTimeMax;
+    private float time;                     // time simulated since the level started
+
+    private float activeRadius;
+    private IntArray active, nextActive;    // indices of the active enemies, sorted
+    private boolean[] activeFlags, nextFlags;   // whether each enemy is active
+    private float activeX, activeY;         // player center the active enemies were found around
+    private int activeVersion;              // level enemies version the active enemies were found for
+    private IntArray candidates;            // enemies whose path box overlaps the player, reused every step
+    private int collisionChecks;            // precise collision checks in the last step
+    private KineticCollisions kinetic;      // predicts exact collision times if set, otherwise overlaps are checked
+
+    /**
+     * Constructor for the world.
+     * @param player the player
+     */
+    public World(Player player) {
+        this.player = player;
+        frozenTime = frozenTimeMax = 5f;
+        activeRadius = DEFAULT_ACTIVE_RADIUS;
+        active = new IntArray();
+        nextActive = new IntArray();
+        candidates = new IntArray();
+        activeFlags = nextFlags = new boolean[0];
+        setFrozen();
+    }
+
+    /**
+     * Sets the level being played and places the player at the level's start. The level should already be built.
+     * @param level the level
+     */
+    public void setLevel(Level level) {
+        this.level = level;
+        time = 0;
+        frozenTime = frozenTimeMax;
+        setFrozen();
+        player.stop();
+        player.setPosition(level.playerStartX, level.playerStartY);
+        player.savePosition();
+        active.clear();
+        activeVersion = level.enemiesVersion - 1;
+        updateActiveEnemies();
+    }
+
+    /**
+     * Streams the level around a point, see {@link Level#stream(float, float, float)}, and finds the active enemies
+     * again if the level's enemies were replaced.
+     * @param x x coordinate of the focus
+     * @param y y coordinate of the focus
+     */
+    public void stream(float x, float y) {
+        level.stream(x, y, time);
+        updateActiveEnemies();
+    }
+
+    /**
+     * Finds the enemies whose path comes within the active radius of the player, if the player has moved far enough
+     * or the level's enemies were replaced since last time. Enemies becoming active are set to where they are at the
+     * current time.
+     */
+    private void updateActiveEnemies() {
+        EnemyStore enemies = level.enemies;
+        float cx = player.getX() + player.getWidth() / 2, cy = player.getY() + player.getHeight() / 2;
+        boolean replaced = activeVersion != level.enemiesVersion;
+        if (!replaced && Math.abs(cx - activeX) <= ACTIVE_SLACK && Math.abs(cy - activeY) <= ACTIVE_SLACK) { return; }
+        if (replaced) {
+            // indices refer to the old enemies, forget them
+            for (int j = 0; j < active.size; j++) {
+                if (active.items[j] < activeFlags.length) { activeFlags[active.items[j]] = false; }
+            }
+            active.clear();
+            activeVersion = level.enemiesVersion;
+        }
+        if (activeFlags.length < enemies.size) {
+            activeFlags = new boolean[enemies.x.length];
+            nextFlags = new boolean[enemies.x.length];
+            for (int j = 0; j < active.size; j++) { activeFlags[active.items[j]] = true; }
+            // the lists never hold more than every enemy, sized for that they do not grow during play
+            active.ensureCapacity(enemies.x.length - active.size);
+            nextActive.ensureCapacity(enemies.x.length - nextActive.size);
+            candidates.ensureCapacity(enemies.x.length - candidates.size);
+        }
+        activeX = cx;
+        activeY = cy;
+        float r = activeRadius + ACTIVE_SLACK;
+        nextActive.clear();
+        level.pathGrid.query(cx - r, cy - r, cx + r, cy + r, nextActive);
+        EnemyStore.sortIndices(nextActive.items, nextActive.size);
+        for (int j = 0; j < nextActive.size; j++) {
+            int i = nextActive.items[j];
+            nextFlags[i] = true;
+            if (!activeFlags[i]) {
+                // waking up, catch up with the level's time
+                if (enemies.pattern[i] != EnemyStore.NO_PATTERN) { enemies.moveTime[i] = time; }
+                enemies.resolve(i);
+            }
+        }
+        for (int j = 0; j < active.size; j++) { activeFlags[active.items[j]] = false; }
+        boolean[] flags = activeFlags;
+        activeFlags = nextFlags;
+        nextFlags = flags;
+        IntArray list = active;
+        active = nextActive;
+        nextActive = list;
+        if (kinetic != null) { kinetic.invalidate(); }
+    }
+
+    /**
+     * Sets how enemies are moved each step, for example {@link ParallelEnemyUpdater} on desktop.
+     * @param enemyUpdater the updater, null to move enemies sequentially
+     */
+    public void setEnemyUpdater(EnemyUpdater enemyUpdater) {
+        this.enemyUpdater = enemyUpdater;
+    }
+
+    /**
+     * Sets the profiler timing the phases of each step.
+     * @param profiler the profiler, null to not time steps
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Sets whether collisions are predicted exactly, see {@link KineticCollisions}, instead of checked for at the end
+     * of each step. Exact collisions can stop an enemy the player only grazed between two steps, so runs with and
+     * without it differ.
+     * @param enabled true to predict collisions
+     */
+    public void setKineticCollisions(boolean enabled) {
+        kinetic = enabled ? new KineticCollisions() : null;
+    }
+
+    /**
+     * Gets the level being played.
+     * @return the level
+     */
+    public Level getLevel() { return level; }
+
+    /**
+     * Saves the current positions of the player and enemies as the previous tick's. Called before each step.
+     */
+    public void savePositions() {
+        player.savePosition();
+        level.enemies.savePositions(active.items, active.size);
+    }
+
+    /**
+     * Updates game elements and checks interactions after movements. Enemies are all moved before any collision is
+     * checked, so results are the same whether they are moved sequentially or in parallel.
+     * @param delta time (s) since last step
+     */
+    public void step(float delta) {
+        updateActiveEnemies();
+        float startTime = time;
+        time += delta;
+        collisionChecks = 0;
+        switch (playerState) {
+            case FROZEN:
+                if (kinetic != null) { kinetic.invalidate(); }
+                moveEnemies(delta);
+                frozenTime -= delta;
+                if (frozenTime <= 0) { frozenTime = 0; setMoving(); }
+                break;
+            case MOVING:
+                frozenTime = MathUtils.clamp(frozenTime+delta,0,frozenTimeMax);
+                if (kinetic != null && !kinetic.isPlanned(player)) {
+                    kinetic.plan(level.enemies, active, player, startTime);
+                }
+                if (profiler != null) { profiler.begin(FrameProfiler.PLAYER_MOVE); }
+                float expectedX = player.getX() - player.getVelX() * delta;
+                float expectedY = player.getY() - player.getVelY() * delta;
+                player.moveX(delta, level.wallGrid);
+                player.moveY(delta, level.wallGrid);
+                checkBounds();
+                if (profiler != null) { profiler.end(FrameProfiler.PLAYER_MOVE); }
+                //enemies
+                moveEnemies(delta);
+                if (profiler != null) { profiler.begin(FrameProfiler.ENEMY_COLLISION); }
+                if (kinetic == null) {
+                    checkEnemyCollisions();
+                } else if (player.getX() == expectedX && player.getY() == expectedY) {
+                    candidates.clear();
+                    collisionChecks = kinetic.advance(level.enemies, time, candidates);
+                    for (int j = 0; j < candidates.size; j++) { level.trajectories.stopped(candidates.items[j]); }
+                } else {
+                    // stopped by a wall or the level's bounds, the player's path this step was not a straight line
+                    checkEnemyCollisions();
+                    kinetic.invalidate();
+                }
+                if (profiler != null) {
+                    profiler.end(FrameProfiler.ENEMY_COLLISION);
+                    profiler.count(FrameProfiler.COLLISION_CHECKS, collisionChecks);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Stops the enemies touching the player. The level's trajectory index narrows down the enemies checked precisely
+     * to those whose pattern puts them near the player at this time.
+     */
+    private void checkEnemyCollisions() {
+        EnemyStore enemies = level.enemies;
+        candidates.clear();
+        level.trajectories.query(player.getX(), player.getY(), player.getX() + player.getWidth(),
+                player.getY() + player.getHeight(), time, candidates);
+        for (int j = 0; j < candidates.size; j++) {
+            int i = candidates.items[j];
+            if (!activeFlags[i]) { continue; }  // position is stale, cannot be near the player anyway
+            collisionChecks++;
+            if (enemies.pattern[i] != EnemyStore.NO_PATTERN && enemies.collides(i, player)) {
+                enemies.stop(i);
+                level.trajectories.stopped(i);
+            }
+        }
+    }
+
+    /**
+     * Moves the active enemies according to their movement patterns.
+     * @param delta time (s) since last step
+     */
+    private void moveEnemies(float delta) {
+        if (profiler != null) { profiler.begin(FrameProfiler.ENEMY_UPDATE); }
+        if (enemyUpdater != null) {
+            enemyUpdater.move(level.enemies, active.items, active.size, delta);
+        } else {
+            level.enemies.move(active.items, active.size, delta);
+        }
+        if (profiler != null) { profiler.end(FrameProfiler.ENEMY_UPDATE); }
+    }
+
+    /**
+     * Keeps player within the bounds of the level.
+     */
+    private void checkBounds() {
+        // left border, right border, bottom border, top border
+        if (player.getX() < 0) { player.setX(0f); }
+        else if (player.getX() > level.mapWidth - player.getWidth()) { player.setX(level.mapWidth - player.getWidth()); }
+        if (player.getY() < 0) { player.setY(0f); }
+        else if (player.getY() > level.mapHeight - player.getHeight()) { player.setY(level.mapHeight - player.getHeight()); }
+    }
+
+    /**
+     * Sets player state to frozen.
+     */
+    public void setFrozen() {
+        playerState = PlayerState.FROZEN;
+    }
+
+    /**
+     * Sets player state to moving.
+     */
+    public void setMoving() {
+        playerState = PlayerState.MOVING;
+    }
+
+    /**
+     * Hashes the exact state of the simulation: time, player and enemies. Two runs that end with the same checksum
+     * almost certainly ended in the same state, see {@link Replay}. Moving enemies are hashed by pattern only, their
+     * position follows from the time and is stale while they are dormant, so the checksum does not depend on the
+     * active radius.
+     * @return the checksum
+     */
+    public long checksum() {
+        long hash = Float.floatToIntBits(time);
+        hash = hash * 31 + Float.floatToIntBits(frozenTime);
+        hash = hash * 31 + playerState.ordinal();
+        hash = hash * 31 + Float.floatToIntBits(player.getX());
+        hash = hash * 31 + Float.floatToIntBits(player.getY());
+        EnemyStore enemies = level.enemies;
+        for (int i = 0; i < enemies.size; i++) {
+            hash = hash * 31 + enemies.pattern[i];
+            if (enemies.pattern[i] == EnemyStore.NO_PATTERN) {
+                hash = hash * 31 + Float.floatToIntBits(enemies.x[i]);
+                hash = hash * 31 + Float.floatToIntBits(enemies.y[i]);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the time simulated since the level started.
+     * @return time (s)
+     */
+    public float getTime() { return time; }
+
+    /**
+     * Gets the indices of the enemies simulated this step, sorted so they keep the level's draw order.
+     * @return active enemies, must not be modified
+     */
+    public IntArray getActiveEnemies() { return active; }
+
+    /**
+     * Sets the distance from the player within which enemies are simulated. Should cover everything on screen.
+     * @param radius active radius
+     */
+    public void setActiveRadius(float radius) {
+        activeRadius = radius;
+        activeVersion--;    // find the active enemies again next step
+    }
+
+    public float getActiveRadius() { return activeRadius; }
+
+    /**
+     * Gets the number of enemies checked precisely for collision with the player in the last step.
+     * @return collision checks
+     */
+    public int getCollisionChecks() { return collisionChecks; }
+
+    /**
+     * Gets the player state.
+     * @return frozen or moving
+     */
+    public PlayerState getPlayerState() { return playerState; }
+}